@@ -0,0 +1,142 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.BaseContext;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.contentstore.Content2;
+import de.espirit.firstspirit.access.store.contentstore.ContentStoreRoot;
+import de.espirit.firstspirit.agency.StoreAgent;
+import de.espirit.or.schema.Entity;
+import de.espirit.or.schema.EntityType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index from entity type to the Content2 objects of the content store that are based on it. The content store is walked only once per
+ * index, so referenced entities are looked up against the matching Content2 candidates only instead of scanning the whole store for
+ * every entity. An index is meant to live for one workflow run.
+ */
+class Content2Index {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = Content2Index.class;
+
+    private final BaseContext context;
+
+    /**
+     * Content2 objects by the name of their entity type, built on first access.
+     */
+    private Map<String, List<Content2>> content2ByEntityTypeName;
+
+    private final Map<EntityType, Boolean> schemaReadOnlyByEntityType = new HashMap<>();
+
+    /**
+     * Constructor for Content2Index.
+     *
+     * @param context The context to get the content store from.
+     */
+    Content2Index(final BaseContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns the first Content2 object that is based on the entity type of the given entity and contains the entity.
+     *
+     * @param entity The entity to look up.
+     * @return the Content2 object or null if no suitable Content2 object exists.
+     */
+    Content2 findContent2For(final Entity entity) {
+        for (final Content2 candidate : getCandidates(entity.getEntityType())) {
+            if (candidate.getEntity(entity.getKeyValue()) != null) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the schema of the given entity is read only. The flag is cached per entity type.
+     *
+     * @param entity The entity to check.
+     * @return true if the schema of the entity is read only.
+     * @throws IllegalStateException if no suitable Content2 object exists for the entity.
+     */
+    boolean isSchemaReadOnly(final Entity entity) {
+        final Content2 content2 = findContent2For(entity);
+        if (content2 == null) {
+            throw new IllegalStateException("No suitable content2 object found for referenced entity!");
+        }
+        final EntityType entityType = entity.getEntityType();
+        Boolean readOnly = schemaReadOnlyByEntityType.get(entityType);
+        if (readOnly == null) {
+            readOnly = content2.getSchema().isReadOnly();
+            schemaReadOnlyByEntityType.put(entityType, readOnly);
+        }
+        return readOnly;
+    }
+
+    private List<Content2> getCandidates(final EntityType entityType) {
+        final List<Content2> sameName = getIndex().get(entityType.getName());
+        if (sameName == null) {
+            return Collections.emptyList();
+        }
+        // entity type names are only unique within a schema
+        final List<Content2> candidates = new ArrayList<>(sameName.size());
+        for (final Content2 content2 : sameName) {
+            if (entityType.equals(content2.getEntityType())) {
+                candidates.add(content2);
+            }
+        }
+        return candidates;
+    }
+
+    private Map<String, List<Content2>> getIndex() {
+        if (content2ByEntityTypeName == null) {
+            final StoreAgent storeAgent = context.requireSpecialist(StoreAgent.TYPE);
+            final ContentStoreRoot contentStoreRoot = (ContentStoreRoot) storeAgent.getStore(Store.Type.CONTENTSTORE);
+
+            final Map<String, List<Content2>> index = new HashMap<>();
+            int count = 0;
+            for (final Content2 content2 : contentStoreRoot.getChildren(Content2.class, true)) {
+                final EntityType entityType = content2.getEntityType();
+                if (entityType != null) {
+                    List<Content2> content2List = index.get(entityType.getName());
+                    if (content2List == null) {
+                        content2List = new ArrayList<>();
+                        index.put(entityType.getName(), content2List);
+                    }
+                    content2List.add(content2);
+                    count++;
+                }
+            }
+            Logging.logDebug("Indexed " + count + " content2 objects for " + index.size() + " entity types", LOGGER);
+            content2ByEntityTypeName = index;
+        }
+        return content2ByEntityTypeName;
+    }
+}
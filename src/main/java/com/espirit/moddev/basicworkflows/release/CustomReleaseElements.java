@@ -0,0 +1,127 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+import com.espirit.moddev.basicworkflows.util.LongHashSet;
+import com.espirit.moddev.basicworkflows.util.StoreUtil;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+import de.espirit.firstspirit.access.store.sitestore.PageRef;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The pagerefs to release instead of the workflow element, e.g. the variants of an A/B test, see
+ * {@link com.espirit.moddev.basicworkflows.util.WorkflowConstants#RELEASE_PAGEREF_ELEMENTS}. The uids are resolved once per workflow
+ * step, the pagerefs and their pages can then be looked up by element key.
+ */
+final class CustomReleaseElements {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = CustomReleaseElements.class;
+
+    private final Set<String> uids;
+    private final List<PageRef> pageRefs;
+    private final LongHashSet keys;
+
+    private CustomReleaseElements(final Set<String> uids, final List<PageRef> pageRefs, final LongHashSet keys) {
+        this.uids = uids;
+        this.pageRefs = pageRefs;
+        this.keys = keys;
+    }
+
+    /**
+     * Resolves the pagerefs with the given uids.
+     *
+     * @param workflowScriptContext the context to use.
+     * @param pageRefUids           the uids of the pagerefs.
+     * @return the resolved pagerefs.
+     */
+    static CustomReleaseElements resolve(final WorkflowScriptContext workflowScriptContext, final Collection<String> pageRefUids) {
+        final Set<String> uids = new LinkedHashSet<>(pageRefUids);
+        final List<PageRef> pageRefs = new ArrayList<>(uids.size());
+        final LongHashSet keys = new LongHashSet(uids.size() * 2);
+        if (!uids.isEmpty()) {
+            final StoreUtil storeUtil = new StoreUtil(workflowScriptContext);
+            for (final String pageRefUid : uids) {
+                final PageRef pageRef = storeUtil.loadPageRefByUid(pageRefUid);
+                if (pageRef == null) {
+                    Logging.logWarning("PageRef with uid '" + pageRefUid + "' not found", LOGGER);
+                    continue;
+                }
+                pageRefs.add(pageRef);
+                keys.add(ElementKey.of(pageRef));
+                final Page page = pageRef.getPage();
+                if (page != null) {
+                    keys.add(ElementKey.of(page));
+                }
+            }
+        }
+        return new CustomReleaseElements(Collections.unmodifiableSet(uids), Collections.unmodifiableList(pageRefs), keys);
+    }
+
+    /**
+     * Checks if the given element is one of the pagerefs or their pages.
+     *
+     * @param idProvider the element.
+     * @return true if the element is a custom release element.
+     */
+    boolean contains(final IDProvider idProvider) {
+        return idProvider != null && keys.contains(ElementKey.of(idProvider));
+    }
+
+    /**
+     * Returns the uids of the pagerefs.
+     *
+     * @return the uids.
+     */
+    Set<String> getUids() {
+        return uids;
+    }
+
+    /**
+     * Returns the resolved pagerefs in the order of their uids.
+     *
+     * @return the pagerefs.
+     */
+    List<PageRef> getPageRefs() {
+        return pageRefs;
+    }
+
+    /**
+     * Checks if there are no custom release elements.
+     *
+     * @return true if no uids are given.
+     */
+    boolean isEmpty() {
+        return uids.isEmpty();
+    }
+}
@@ -0,0 +1,173 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+import com.espirit.moddev.basicworkflows.util.FsLocale;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.Language;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.firstspirit.agency.QueryAgent;
+import de.espirit.firstspirit.agency.StoreAgent;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the names shown for the ids of elements that could not be released. Elements of the release are resolved without a lookup,
+ * other ids are looked up in the stores and only queried if no store knows them. The display language is resolved once.
+ * <p>
+ * The release progress reports bare ids, so the stores are searched in a fixed order both for known elements and for lookups. An id that
+ * exists in several stores always resolves to the element of the first store.
+ */
+final class ElementNames {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ElementNames.class;
+
+    /**
+     * The stores in the order they are searched, the stores most elements of a release belong to first.
+     */
+    private static final Store.Type[] STORE_TYPES = {
+        Store.Type.SITESTORE, Store.Type.PAGESTORE, Store.Type.MEDIASTORE, Store.Type.GLOBALSTORE, Store.Type.CONTENTSTORE,
+        Store.Type.TEMPLATESTORE};
+
+    private final WorkflowScriptContext workflowScriptContext;
+    private final Map<Long, IDProvider> knownElementsByKey = new HashMap<>();
+    private Language language;
+
+    /**
+     * Constructor for ElementNames.
+     *
+     * @param workflowScriptContext the context to use.
+     */
+    ElementNames(final WorkflowScriptContext workflowScriptContext) {
+        this.workflowScriptContext = workflowScriptContext;
+    }
+
+    /**
+     * Adds elements whose names can be resolved without a lookup.
+     *
+     * @param elements the elements.
+     */
+    void addKnownElements(final Iterable<? extends IDProvider> elements) {
+        for (final IDProvider element : elements) {
+            knownElementsByKey.put(ElementKey.of(element), element);
+        }
+    }
+
+    /**
+     * Resolves the display strings of the given ids. Elements without a uid are resolved to an empty String, ids without an element are
+     * logged and left out.
+     *
+     * @param ids the ids to resolve.
+     * @return the display strings by id, in the order of the given ids.
+     */
+    Map<Long, String> resolve(final Collection<Long> ids) {
+        final Map<Long, String> names = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return names;
+        }
+        final Map<Long, IDProvider> elements = lookup(ids);
+        for (final Long id : ids) {
+            final IDProvider element = elements.get(id);
+            if (element == null) {
+                Logging.logError("Found no element with id " + id, LOGGER);
+            } else if (element.hasUid()) {
+                names.put(id, element.getDisplayName(getLanguage()) + " (" + element.getUid() + ", " + element.getId() + ")\n");
+            } else {
+                names.put(id, "");
+            }
+        }
+        return names;
+    }
+
+    private Map<Long, IDProvider> lookup(final Collection<Long> ids) {
+        final Map<Long, IDProvider> elements = new HashMap<>();
+        final Set<Long> missing = new LinkedHashSet<>();
+        for (final Long id : ids) {
+            final IDProvider known = getKnownElement(id);
+            if (known != null) {
+                elements.put(id, known);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        // look up the remaining ids store by store
+        if (!missing.isEmpty()) {
+            final StoreAgent storeAgent = workflowScriptContext.requireSpecialist(StoreAgent.TYPE);
+            for (final Store.Type storeType : STORE_TYPES) {
+                final Store store = storeAgent.getStore(storeType);
+                final Iterator<Long> iterator = missing.iterator();
+                while (iterator.hasNext()) {
+                    final Long id = iterator.next();
+                    final IDProvider element = store.getStoreElement(id);
+                    if (element != null) {
+                        elements.put(id, element);
+                        iterator.remove();
+                    }
+                }
+                if (missing.isEmpty()) {
+                    break;
+                }
+            }
+        }
+
+        // query the ids no store knows
+        if (!missing.isEmpty()) {
+            final QueryAgent queryAgent = workflowScriptContext.requireSpecialist(QueryAgent.TYPE);
+            for (final Long id : missing) {
+                final Iterator<IDProvider> hits = queryAgent.answer("fs.id=" + id).iterator();
+                if (hits.hasNext()) {
+                    elements.put(id, hits.next());
+                }
+            }
+        }
+        return elements;
+    }
+
+    private IDProvider getKnownElement(final long id) {
+        for (final Store.Type storeType : STORE_TYPES) {
+            final IDProvider known = knownElementsByKey.get(ElementKey.of(storeType, id));
+            if (known != null) {
+                return known;
+            }
+        }
+        return null;
+    }
+
+    private Language getLanguage() {
+        if (language == null) {
+            language = new FsLocale(workflowScriptContext).getLanguage();
+        }
+        return language;
+    }
+}
@@ -0,0 +1,121 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.ReferenceEntry;
+import de.espirit.firstspirit.access.store.IDProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the outgoing references of elements and whether one of them is broken. Shared elements like header or footer pages are
+ * referenced by many pages of a release, but their references only have to be loaded and scanned once. A cache is meant to live for
+ * one workflow step and may be shared by the threads of a parallel reference walk.
+ */
+class OutgoingReferenceCache {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = OutgoingReferenceCache.class;
+
+    private static final ReferenceEntry[] NO_REFERENCES = new ReferenceEntry[0];
+
+    private final ConcurrentMap<Long, ReferenceEntry[]> outgoingReferences = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Boolean> brokenOutgoingReferences = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, List<ReferenceEntry>> releaseReferences = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, List<ReferenceEntry>> releaseReferencesWithMedia = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the outgoing references of the given element, they are loaded on first access.
+     *
+     * @param idProvider the element to get the references of.
+     * @return the outgoing references.
+     */
+    ReferenceEntry[] getOutgoingReferences(final IDProvider idProvider) {
+        final long key = ElementKey.of(idProvider);
+        ReferenceEntry[] references = outgoingReferences.get(key);
+        if (references == null) {
+            references = idProvider.getOutgoingReferences();
+            if (references == null) {
+                references = NO_REFERENCES;
+            }
+            outgoingReferences.put(key, references);
+        }
+        return references;
+    }
+
+    /**
+     * Returns the outgoing references of the given element that have to be released with it, see
+     * {@link WorkflowObject#isReleaseReference(ReferenceEntry, boolean)}. The filtered references are computed on first access, so the
+     * references of a folder are only filtered once for all of its never released children.
+     *
+     * @param idProvider       the element to get the references of.
+     * @param releaseWithMedia Determines if media references should be included.
+     * @return the filtered outgoing references.
+     */
+    List<ReferenceEntry> getReleaseReferences(final IDProvider idProvider, final boolean releaseWithMedia) {
+        final long key = ElementKey.of(idProvider);
+        final ConcurrentMap<Long, List<ReferenceEntry>> cache = releaseWithMedia ? releaseReferencesWithMedia : releaseReferences;
+        List<ReferenceEntry> references = cache.get(key);
+        if (references == null) {
+            final List<ReferenceEntry> filtered = new ArrayList<>();
+            for (final ReferenceEntry reference : getOutgoingReferences(idProvider)) {
+                if (WorkflowObject.isReleaseReference(reference, releaseWithMedia)) {
+                    filtered.add(reference);
+                }
+            }
+            references = Collections.unmodifiableList(filtered);
+            cache.put(key, references);
+        }
+        return references;
+    }
+
+    /**
+     * Checks if one of the outgoing references of the given element is broken. The element is scanned on first access only.
+     *
+     * @param idProvider the element to check.
+     * @return true if the element has broken outgoing references.
+     */
+    boolean hasBrokenOutgoingReferences(final IDProvider idProvider) {
+        final long key = ElementKey.of(idProvider);
+        Boolean broken = brokenOutgoingReferences.get(key);
+        if (broken == null) {
+            broken = false;
+            for (final ReferenceEntry reference : getOutgoingReferences(idProvider)) {
+                if (reference.isBroken()) {
+                    if (Logging.isDebugEnabled(LOGGER)) {
+                        Logging.logDebug("Broken reference " + reference + " of element with Id '" + idProvider.getId() + "'", LOGGER);
+                    }
+                    broken = true;
+                }
+            }
+            brokenOutgoingReferences.put(key, broken);
+        }
+        return broken;
+    }
+}
@@ -0,0 +1,33 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+/**
+ * Receives the references found by a reference walk of a {@link WorkflowObject} as soon as they are found.
+ */
+interface ReferenceListener {
+
+    /**
+     * Called for every found reference.
+     *
+     * @param reference the reference entry or element that was found.
+     */
+    void referenceFound(Object reference);
+}
@@ -0,0 +1,197 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+
+import de.espirit.firstspirit.access.ReferenceEntry;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.or.schema.Entity;
+import de.espirit.or.schema.EntityType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects references and elements by the element they point to. Several reference entries pointing to the same element (e.g. a media
+ * used in many sections) are reduced to one, so the rule and broken reference checks run once per referenced element. All
+ * collected objects are kept as usages of their target. Broken references have no target and are always kept.
+ */
+class ReferenceTargets {
+
+    private final Map<Object, List<Object>> usagesByTarget = new LinkedHashMap<>();
+
+    /**
+     * Reduces the given references to one reference per target, keeping the order of the first occurrence of every target.
+     *
+     * @param references the references and elements to reduce.
+     * @return one reference or element per target.
+     */
+    static Set<Object> canonicalize(final Collection<?> references) {
+        final ReferenceTargets referenceTargets = new ReferenceTargets();
+        referenceTargets.addAll(references);
+        return referenceTargets.getTargets();
+    }
+
+    /**
+     * Adds the given references and elements.
+     *
+     * @param references the references and elements to add.
+     */
+    void addAll(final Collection<?> references) {
+        for (final Object reference : references) {
+            add(reference);
+        }
+    }
+
+    /**
+     * Adds a reference or element.
+     *
+     * @param reference the reference or element to add.
+     * @return true if the reference points to a target that wasn't added before.
+     */
+    boolean add(final Object reference) {
+        final Object key = getTargetKey(reference);
+        List<Object> usages = usagesByTarget.get(key);
+        final boolean newTarget = usages == null;
+        if (newTarget) {
+            usages = new ArrayList<>(1);
+            usagesByTarget.put(key, usages);
+        }
+        usages.add(reference);
+        return newTarget;
+    }
+
+    /**
+     * Returns one reference or element for every target. Reference entries are preferred over elements, as the broken reference check
+     * only looks at reference entries.
+     *
+     * @return one reference or element per target.
+     */
+    Set<Object> getTargets() {
+        final Set<Object> targets = new LinkedHashSet<>();
+        for (final List<Object> usages : usagesByTarget.values()) {
+            Object target = usages.get(0);
+            for (final Object usage : usages) {
+                if (usage instanceof ReferenceEntry) {
+                    target = usage;
+                    break;
+                }
+            }
+            targets.add(target);
+        }
+        return targets;
+    }
+
+    /**
+     * Returns all references and elements added for the target of the given reference.
+     *
+     * @param reference a reference or element.
+     * @return the usages of the target, empty if the target is unknown.
+     */
+    List<Object> getUsages(final Object reference) {
+        final List<Object> usages = usagesByTarget.get(getTargetKey(reference));
+        return usages != null ? Collections.unmodifiableList(usages) : Collections.emptyList();
+    }
+
+    /**
+     * Returns the number of added references and elements.
+     *
+     * @return the number of usages of all targets.
+     */
+    int getUsageCount() {
+        int count = 0;
+        for (final List<Object> usages : usagesByTarget.values()) {
+            count += usages.size();
+        }
+        return count;
+    }
+
+    private static Object getTargetKey(final Object reference) {
+        if (reference instanceof ReferenceEntry) {
+            final ReferenceEntry referenceEntry = (ReferenceEntry) reference;
+            final Object referencedObject = referenceEntry.getReferencedObject();
+            if (referencedObject instanceof Entity) {
+                return getEntityKey((Entity) referencedObject);
+            }
+            final IDProvider referencedElement = referenceEntry.getReferencedElement();
+            if (referencedElement != null && !referenceEntry.isBroken()) {
+                return ElementKey.of(referencedElement);
+            }
+            // broken references are reported one by one
+            return reference;
+        } else if (reference instanceof IDProvider) {
+            return ElementKey.of((IDProvider) reference);
+        } else if (reference instanceof Entity) {
+            return getEntityKey((Entity) reference);
+        }
+        return reference;
+    }
+
+    private static EntityKey getEntityKey(final Entity entity) {
+        return new EntityKey(entity.getEntityType(), entity.getKeyValue());
+    }
+
+
+    /**
+     * The key of a referenced entity. Entity type names are only unique within a schema, so the entity type itself is part of the key.
+     */
+    private static final class EntityKey {
+
+        private final EntityType entityType;
+        private final Object keyValue;
+
+        private EntityKey(final EntityType entityType, final Object keyValue) {
+            this.entityType = entityType;
+            this.keyValue = keyValue;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EntityKey)) {
+                return false;
+            }
+            final EntityKey that = (EntityKey) o;
+            return (entityType != null ? entityType.equals(that.entityType) : that.entityType == null)
+                   && (keyValue != null ? keyValue.equals(that.keyValue) : that.keyValue == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = entityType != null ? entityType.hashCode() : 0;
+            result = 31 * result + (keyValue != null ? keyValue.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Entity{" + (entityType != null ? entityType.getName() : null) + ", " + keyValue + '}';
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes every element at most once while a workflow step runs. Elements that are referenced several times or checked for
+ * different rules are only loaded from the server the first time. A tracker is meant to live for one workflow step and may be shared
+ * by the threads of a parallel rule check.
+ */
+class RefreshTracker {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = RefreshTracker.class;
+
+    private final ConcurrentMap<Store.Type, Set<Long>> refreshedIds = new ConcurrentHashMap<>();
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private final AtomicInteger avoidedRefreshes = new AtomicInteger();
+
+    /**
+     * Refreshes the given element unless it was refreshed before by this tracker.
+     *
+     * @param idProvider the element to refresh.
+     * @return true if the element was refreshed, false if it was refreshed before.
+     */
+    boolean refresh(final IDProvider idProvider) {
+        if (getRefreshedIds(idProvider.getStore().getType()).add(idProvider.getId())) {
+            idProvider.refresh();
+            refreshes.incrementAndGet();
+            return true;
+        }
+        avoidedRefreshes.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Logs how many refreshes were done and how many were avoided.
+     */
+    void logStatistics() {
+        Logging.logInfo("Refreshed " + refreshes.get() + " elements, avoided " + avoidedRefreshes.get() + " refreshes", LOGGER);
+    }
+
+    private Set<Long> getRefreshedIds(final Store.Type storeType) {
+        Set<Long> ids = refreshedIds.get(storeType);
+        if (ids == null) {
+            final Set<Long> newIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+            ids = refreshedIds.putIfAbsent(storeType, newIds);
+            if (ids == null) {
+                ids = newIds;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,131 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.ReleaseProgress;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The elements of a chunked recursive release that have been released already, stored in the workflow session. It listens to the
+ * finished releases and adds the successfully released elements once their chunk is completed, so a retried release step resumes after
+ * the last completed chunk. Elements that changed after their release are released again.
+ */
+class ReleaseCheckpoint implements Serializable, ReleaseProgressListener {
+
+    private static final long serialVersionUID = 7160375728103552490L;
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ReleaseCheckpoint.class;
+
+    private final long startElementKey;
+    private final Set<Long> releasedKeys = new HashSet<>();
+    private transient List<Long> pendingKeys;
+
+    private ReleaseCheckpoint(final long startElementKey) {
+        this.startElementKey = startElementKey;
+    }
+
+    /**
+     * Reads the checkpoint of the release of the given start element from the session. A new checkpoint is stored in the session if there
+     * is none or if it belongs to another start element.
+     *
+     * @param workflowScriptContext the context to use.
+     * @param startElement          the start element of the recursive release.
+     * @return the checkpoint.
+     */
+    static ReleaseCheckpoint readFromSession(final WorkflowScriptContext workflowScriptContext, final IDProvider startElement) {
+        final long startElementKey = ElementKey.of(startElement);
+        final Object checkpoint = workflowScriptContext.getSession().get(WorkflowConstants.WF_RELEASE_CHECKPOINT);
+        if (checkpoint instanceof ReleaseCheckpoint && ((ReleaseCheckpoint) checkpoint).startElementKey == startElementKey) {
+            final ReleaseCheckpoint releaseCheckpoint = (ReleaseCheckpoint) checkpoint;
+            Logging.logInfo("Resuming release, " + releaseCheckpoint.releasedKeys.size() + " elements have been released already", LOGGER);
+            return releaseCheckpoint;
+        }
+        final ReleaseCheckpoint releaseCheckpoint = new ReleaseCheckpoint(startElementKey);
+        workflowScriptContext.getSession().put(WorkflowConstants.WF_RELEASE_CHECKPOINT, releaseCheckpoint);
+        return releaseCheckpoint;
+    }
+
+    /**
+     * Removes the checkpoint from the session, e.g. after the release is completed.
+     *
+     * @param workflowScriptContext the context to use.
+     */
+    static void removeFromSession(final WorkflowScriptContext workflowScriptContext) {
+        workflowScriptContext.getSession().remove(WorkflowConstants.WF_RELEASE_CHECKPOINT);
+    }
+
+    /**
+     * Checks if the given element was released by a completed chunk and hasn't changed since.
+     *
+     * @param element the element.
+     * @return true if the element doesn't have to be released again.
+     */
+    boolean isReleased(final IDProvider element) {
+        return releasedKeys.contains(ElementKey.of(element)) && element.getReleaseStatus() == IDProvider.RELEASED;
+    }
+
+    /**
+     * Adds the elements released since the last completed chunk to the checkpoint and stores it in the session again.
+     *
+     * @param workflowScriptContext the context to use.
+     */
+    void completeChunk(final WorkflowScriptContext workflowScriptContext) {
+        final List<Long> pending = getPendingKeys();
+        if (!pending.isEmpty()) {
+            releasedKeys.addAll(pending);
+            pending.clear();
+            workflowScriptContext.getSession().put(WorkflowConstants.WF_RELEASE_CHECKPOINT, this);
+            Logging.logInfo("Release checkpoint: " + releasedKeys.size() + " elements released", LOGGER);
+        }
+    }
+
+    @Override
+    public void releaseRunning(final IDProvider element, final ReleaseProgress progress) {
+        // only completed releases are checkpointed
+    }
+
+    @Override
+    public void releaseFinished(final IDProvider element, final ReleaseProgress progress, final boolean successful) {
+        if (successful) {
+            getPendingKeys().add(ElementKey.of(element));
+        }
+    }
+
+    private List<Long> getPendingKeys() {
+        if (pendingKeys == null) {
+            pendingKeys = new ArrayList<>();
+        }
+        return pendingKeys;
+    }
+}
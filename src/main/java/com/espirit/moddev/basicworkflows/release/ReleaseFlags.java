@@ -0,0 +1,101 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import de.espirit.firstspirit.access.AccessUtil;
+import de.espirit.firstspirit.access.ServerActionHandle;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.ReleaseProgress;
+
+/**
+ * The flags a release server action is started with. Elements with equal flags can be released together.
+ */
+final class ReleaseFlags {
+
+    private final boolean checkOnly;
+    private final boolean ensureAccessibility;
+    private final boolean recursive;
+    private final IDProvider.DependentReleaseType dependentReleaseType;
+
+    /**
+     * Constructor for ReleaseFlags.
+     *
+     * @param checkOnly            Determines if the release should only be checked.
+     * @param ensureAccessibility  Determines if unreleased parents should be released as well.
+     * @param recursive            Determines if the children should be released as well.
+     * @param dependentReleaseType The type of the dependent release.
+     */
+    ReleaseFlags(final boolean checkOnly, final boolean ensureAccessibility, final boolean recursive,
+                 final IDProvider.DependentReleaseType dependentReleaseType) {
+        this.checkOnly = checkOnly;
+        this.ensureAccessibility = ensureAccessibility;
+        this.recursive = recursive;
+        this.dependentReleaseType = dependentReleaseType;
+    }
+
+    /**
+     * Starts the release server action for the given element.
+     *
+     * @param idProvider the element to release.
+     * @return the handle of the started server action.
+     */
+    ServerActionHandle<? extends ReleaseProgress, Boolean> release(final IDProvider idProvider) {
+        return AccessUtil.release(idProvider, checkOnly, ensureAccessibility, recursive, dependentReleaseType);
+    }
+
+    /**
+     * Checks if a recursive release with these flags also releases the children that would be released with the given flags.
+     *
+     * @param childFlags the flags of a child element.
+     * @return true if the child is covered by a release of its parent with these flags.
+     */
+    boolean covers(final ReleaseFlags childFlags) {
+        return recursive && checkOnly == childFlags.checkOnly && ensureAccessibility == childFlags.ensureAccessibility
+               && dependentReleaseType == childFlags.dependentReleaseType;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReleaseFlags)) {
+            return false;
+        }
+        final ReleaseFlags that = (ReleaseFlags) o;
+        return checkOnly == that.checkOnly && ensureAccessibility == that.ensureAccessibility && recursive == that.recursive
+               && dependentReleaseType == that.dependentReleaseType;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = checkOnly ? 1 : 0;
+        result = 31 * result + (ensureAccessibility ? 1 : 0);
+        result = 31 * result + (recursive ? 1 : 0);
+        result = 31 * result + (dependentReleaseType != null ? dependentReleaseType.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ReleaseFlags{checkOnly=" + checkOnly + ", ensureAccessibility=" + ensureAccessibility + ", recursive=" + recursive
+               + ", dependentReleaseType=" + dependentReleaseType + '}';
+    }
+}
@@ -0,0 +1,129 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ReferenceResult;
+import com.espirit.moddev.basicworkflows.util.WorkflowOptions;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.or.schema.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Checks the start element and the children of a release for issues that prevent the release. The workflow object, the resource bundle
+ * and the workflow options are set up once and shared by the checks of all elements of a workflow step.
+ */
+final class ReleaseIssueChecker {
+
+    private final WorkflowScriptContext workflowScriptContext;
+    private final WorkflowObject workflowObject;
+    private final IDProvider startElement;
+    private final boolean startedOnDatasource;
+    private final boolean releaseRecursively;
+    private final boolean releaseWithMedia;
+
+    /**
+     * Constructor for ReleaseIssueChecker.
+     *
+     * @param workflowScriptContext  the context to use.
+     * @param workflowOptions        the options of the workflow step.
+     * @param startedOnDatasource    true if the workflow was started on a datasource.
+     * @param content2Index          the Content2 index shared by all checks of this run.
+     * @param refreshTracker         the tracker shared by all checks of this run.
+     * @param outgoingReferenceCache the cache of outgoing references shared by all checks of this run.
+     * @param ruleCheckExecutor      the executor to check referenced elements with, may be null.
+     */
+    ReleaseIssueChecker(final WorkflowScriptContext workflowScriptContext, final WorkflowOptions workflowOptions,
+                        final boolean startedOnDatasource, final Content2Index content2Index, final RefreshTracker refreshTracker,
+                        final OutgoingReferenceCache outgoingReferenceCache, final ExecutorService ruleCheckExecutor) {
+        this.workflowScriptContext = workflowScriptContext;
+        this.startedOnDatasource = startedOnDatasource;
+        startElement = workflowScriptContext.getElement();
+        releaseRecursively = workflowOptions.isReleaseRecursively();
+        releaseWithMedia = workflowOptions.isReleaseWithMedia();
+
+        workflowObject = new WorkflowObject(workflowScriptContext);
+        workflowObject.setContent2Index(content2Index);
+        workflowObject.setRefreshTracker(refreshTracker);
+        workflowObject.setOutgoingReferenceCache(outgoingReferenceCache);
+        workflowObject.setRuleCheckExecutor(ruleCheckExecutor);
+        workflowObject.setRecursively(releaseRecursively);
+    }
+
+    /**
+     * Checks if the referenced objects of the supplied idProvider can be released.
+     * In case of a recursive release additionally checks the idProvider itself.
+     *
+     * @param idProvider  to check, null to check the element the workflow was started on.
+     * @param releasePlan the plan to record the collected references in, may be null.
+     * @return true if there will be some issues during release.
+     */
+    boolean hasReleaseIssues(final IDProvider idProvider, final ReleasePlan releasePlan) {
+        if (idProvider != null) {
+            workflowObject.setStoreElement(idProvider);
+        } else {
+            workflowObject.resetStoreElement();
+        }
+
+        final List<Object> referencedObjects = new ArrayList<>();
+        if (startedOnDatasource) {
+            // the datasets released together with the workflow dataset are checked as well
+            for (final Entity entity : ReleaseObject.getEntitiesToRelease(workflowScriptContext)) {
+                referencedObjects.addAll(workflowObject.getRefObjectsFromEntity(entity, true));
+            }
+        } else {
+            referencedObjects.addAll(workflowObject.getRefObjectsFromStoreElement(true, false));
+            if (releasePlan != null && idProvider != null) {
+                final ReleasePlan.InclusionReason reason = idProvider == startElement
+                                                           ? ReleasePlan.InclusionReason.START_ELEMENT
+                                                           : ReleasePlan.InclusionReason.RECURSIVE_CHILD;
+                releasePlan.addSource(idProvider, reason, referencedObjects);
+            }
+        }
+
+        // check element itself in case of a recursive release, otherwise the element gets already checked by the elementStatusProvider.
+        if (releaseRecursively && idProvider != startElement) {
+            referencedObjects.add(idProvider);
+        }
+
+        final ReferenceResult referenceResult = workflowObject.checkReferences(referencedObjects, releaseWithMedia);
+        return referenceResult.hasReleaseIssues(releaseWithMedia);
+    }
+
+    /**
+     * Checks the given elements one after another. Every element is checked, even if an earlier one already has issues, so that all
+     * conflicts end up in the session.
+     *
+     * @param idProviders the elements to check.
+     * @param releasePlan the plan to record the collected references in, may be null.
+     * @return true if there will be some issues during the release of any of the elements.
+     */
+    boolean hasReleaseIssues(final Iterable<? extends IDProvider> idProviders, final ReleasePlan releasePlan) {
+        boolean hasIssues = false;
+        for (final IDProvider idProvider : idProviders) {
+            hasIssues = hasReleaseIssues(idProvider, releasePlan) || hasIssues;
+        }
+        return hasIssues;
+    }
+}
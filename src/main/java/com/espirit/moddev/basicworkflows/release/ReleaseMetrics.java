@@ -0,0 +1,178 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.ReleaseProgress;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates the progress of all server actions of a release: released elements, elements that could not be locked or released due to
+ * missing permissions, elapsed time and throughput. Logs a summary at INFO, the ids of the released elements only at DEBUG.
+ */
+final class ReleaseMetrics implements ReleaseProgressListener {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ReleaseMetrics.class;
+
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final long startNanos;
+    private final Map<Long, Integer> releasedByRunningElement = new HashMap<>();
+    private long lastLogNanos;
+    private int released;
+    private int lockFailed;
+    private int missingPermission;
+    private int finishedReleases;
+    private int failedReleases;
+
+    /**
+     * Constructor for ReleaseMetrics, the elapsed time is measured from now on.
+     */
+    ReleaseMetrics() {
+        startNanos = System.nanoTime();
+        lastLogNanos = startNanos;
+    }
+
+    @Override
+    public void releaseRunning(final IDProvider element, final ReleaseProgress progress) {
+        // the progress of a running release normally comes without the released ids
+        if (progress != null && progress.getReleasedElements() != null) {
+            releasedByRunningElement.put(ElementKey.of(element), progress.getReleasedElements().size());
+        }
+        final long now = System.nanoTime();
+        if (now - lastLogNanos >= LOG_INTERVAL_NANOS) {
+            lastLogNanos = now;
+            Logging.logInfo("Release running: " + this, LOGGER);
+        }
+    }
+
+    @Override
+    public void releaseFinished(final IDProvider element, final ReleaseProgress progress, final boolean successful) {
+        releasedByRunningElement.remove(ElementKey.of(element));
+        finishedReleases++;
+        if (!successful) {
+            failedReleases++;
+        }
+        if (progress != null) {
+            released += size(progress.getReleasedElements());
+            lockFailed += size(progress.getLockFailedElements());
+            missingPermission += size(progress.getMissingPermissionElements());
+            if (Logging.isDebugEnabled(LOGGER)) {
+                Logging.logDebug("Released with element " + element.getId() + ": " + progress.getReleasedElements(), LOGGER);
+            }
+        }
+    }
+
+    /**
+     * Logs the summary of all releases so far.
+     */
+    void logSummary() {
+        Logging.logInfo("Release finished: " + this, LOGGER);
+    }
+
+    /**
+     * Returns the number of released elements, including the elements released so far by running server actions.
+     *
+     * @return the number of released elements.
+     */
+    int getReleasedCount() {
+        int count = released;
+        for (final Integer running : releasedByRunningElement.values()) {
+            count += running;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of elements that could not be locked.
+     *
+     * @return the number of lock failures.
+     */
+    int getLockFailedCount() {
+        return lockFailed;
+    }
+
+    /**
+     * Returns the number of elements that could not be released due to missing permissions.
+     *
+     * @return the number of permission failures.
+     */
+    int getMissingPermissionCount() {
+        return missingPermission;
+    }
+
+    /**
+     * Returns the number of finished server actions.
+     *
+     * @return the number of finished releases.
+     */
+    int getFinishedReleases() {
+        return finishedReleases;
+    }
+
+    /**
+     * Returns the number of finished server actions that weren't successful.
+     *
+     * @return the number of failed releases.
+     */
+    int getFailedReleases() {
+        return failedReleases;
+    }
+
+    /**
+     * Returns the time since the metrics were created.
+     *
+     * @return the elapsed time in milliseconds.
+     */
+    long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of released elements per second since the metrics were created.
+     *
+     * @return the throughput.
+     */
+    double getElementsPerSecond() {
+        final long elapsedMillis = getElapsedMillis();
+        return elapsedMillis > 0 ? getReleasedCount() * 1000.0 / elapsedMillis : 0;
+    }
+
+    private static int size(final Collection<?> elements) {
+        return elements != null ? elements.size() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return getReleasedCount() + " elements released in " + getElapsedMillis() + " ms (" + String.format("%.1f", getElementsPerSecond())
+               + " elements/s), " + finishedReleases + " releases finished, " + failedReleases + " failed, " + lockFailed
+               + " elements not locked, " + missingPermission + " elements without permission";
+    }
+}
@@ -19,16 +19,18 @@
  */
 package com.espirit.moddev.basicworkflows.release;
 
+import com.espirit.moddev.basicworkflows.util.AncestorIndex;
 import com.espirit.moddev.basicworkflows.util.Dialog;
-import com.espirit.moddev.basicworkflows.util.FormEvaluator;
+import com.espirit.moddev.basicworkflows.util.ElementKey;
 import com.espirit.moddev.basicworkflows.util.FormValidator;
 import com.espirit.moddev.basicworkflows.util.FsLocale;
-import com.espirit.moddev.basicworkflows.util.StoreComparator;
-import com.espirit.moddev.basicworkflows.util.StoreUtil;
+import com.espirit.moddev.basicworkflows.util.LongHashSet;
+import com.espirit.moddev.basicworkflows.util.RecursiveChildren;
+import com.espirit.moddev.basicworkflows.util.ValidationService;
 import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
+import com.espirit.moddev.basicworkflows.util.WorkflowOptions;
 
 import de.espirit.common.base.Logging;
-import de.espirit.firstspirit.access.AccessUtil;
 import de.espirit.firstspirit.access.ReferenceEntry;
 import de.espirit.firstspirit.access.ServerActionHandle;
 import de.espirit.firstspirit.access.store.IDProvider;
@@ -43,22 +45,25 @@ import de.espirit.firstspirit.access.store.mediastore.Media;
 import de.espirit.firstspirit.access.store.mediastore.MediaFolder;
 import de.espirit.firstspirit.access.store.pagestore.Page;
 import de.espirit.firstspirit.access.store.pagestore.PageFolder;
-import de.espirit.firstspirit.access.store.pagestore.Section;
 import de.espirit.firstspirit.access.store.sitestore.DocumentGroup;
 import de.espirit.firstspirit.access.store.sitestore.PageRef;
 import de.espirit.firstspirit.access.store.sitestore.PageRefFolder;
 import de.espirit.firstspirit.access.store.sitestore.SiteStoreRoot;
 import de.espirit.firstspirit.access.store.templatestore.TemplateStoreElement;
 import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
-import de.espirit.firstspirit.agency.QueryAgent;
 import de.espirit.or.Session;
 import de.espirit.or.schema.Entity;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 
@@ -73,9 +78,9 @@ public class ReleaseObject {
     private final Dialog dialog;
 
     /**
-     * The Entity to be released.
+     * The Entities to be released.
      */
-    private Entity entity;
+    private List<Entity> entities;
     /**
      * The workflowScriptContext from the workflow.
      */
@@ -91,11 +96,40 @@ public class ReleaseObject {
     /**
      * The List of validation Errors.
      */
-	private final Set<String> validationErrorList = new HashSet<>();
+	private final Set<String> validationErrorList = new LinkedHashSet<>();
     /**
      * The logging class to use.
      */
     public static final Class<?> LOGGER = ReleaseObject.class;
+    /**
+     * The options of the workflow step, read on first use if not set.
+     */
+    private WorkflowOptions workflowOptions;
+
+    /**
+     * The pagerefs to release instead of the workflow element, resolved on first use if not set.
+     */
+    private CustomReleaseElements customReleaseElements;
+
+    /**
+     * The service to validate the released elements with, created on first use if not set.
+     */
+    private ValidationService validationService;
+
+    /**
+     * The validator for all elements of this release, created on first use.
+     */
+    private FormValidator formValidator;
+
+    /**
+     * The parent chains of the released elements, created on first use.
+     */
+    private AncestorIndex ancestorIndex;
+
+    /**
+     * The names of elements that could not be released, created on first use.
+     */
+    private ElementNames elementNames;
 
     /**
      * Constructor for ReleaseObject with an Entity.
@@ -105,7 +139,19 @@ public class ReleaseObject {
      */
     ReleaseObject(final WorkflowScriptContext workflowScriptContext, final Entity releaseEntity) {
         this(workflowScriptContext);
-        this.entity = releaseEntity;
+        this.entities = Collections.singletonList(releaseEntity);
+    }
+
+    /**
+     * Constructor for ReleaseObject with several Entities of the same Content2 object. The entities are validated first and only released
+     * if all of them are valid.
+     *
+     * @param workflowScriptContext The workflowScriptContext from the workflow.
+     * @param releaseEntities The Entities that are to be released.
+     */
+    ReleaseObject(final WorkflowScriptContext workflowScriptContext, final Collection<Entity> releaseEntities) {
+        this(workflowScriptContext);
+        this.entities = new ArrayList<>(releaseEntities);
     }
 
     /**
@@ -139,18 +185,17 @@ public class ReleaseObject {
         final Set<Long> lockedList = new HashSet<>();
         final Set<Long> permList = new HashSet<>();
 
-        // release entity
-        if (this.entity != null) {
+        // release entities
+        if (this.entities != null) {
             final ContentWorkflowable contentWorkflowable = (ContentWorkflowable) workflowScriptContext.getWorkflowable();
             final Content2 content2 = contentWorkflowable.getContent();
-            result = releaseEntity(content2, this.entity, checkOnly);
+            result = releaseEntities(content2, this.entities, checkOnly);
         } else {
             result = releaseStoreElement(checkOnly, lockedList, permList, releaseRecursively);
         }
 
         // set in integration tests
-        final String suppressDialog = (String) workflowScriptContext.getSession().get("wfSuppressDialog");
-        if (!WorkflowConstants.TRUE.equals(suppressDialog)) {
+        if (!getWorkflowOptions().isSuppressDialog()) {
             showLockedElementsIfAny(lockedList);
             showDeniedElementsIfAny(permList);
             showInvalidElementsIfAny();
@@ -171,10 +216,10 @@ public class ReleaseObject {
     private void showDeniedElementsIfAny(final Set<Long> permList) {
         if (!permList.isEmpty()) {
             final StringBuilder errorMsg = new StringBuilder(bundle.getString("errorPermission")).append(":\n\n");
-            Logging.logInfo("MissingPermissionElement", LOGGER);
-            for (final Long missing : permList) {
-                Logging.logInfo("  id:" + missing, LOGGER);
-                errorMsg.append(createErrorString(missing));
+            Logging.logInfo(permList.size() + " elements not released due to missing permissions", LOGGER);
+            Logging.logDebug("MissingPermissionElements: " + permList, LOGGER);
+            for (final String name : getElementNames().resolve(permList).values()) {
+                errorMsg.append(name);
             }
             dialog.showError(bundle.getString("errorPermission"), errorMsg.toString());
         }
@@ -182,12 +227,12 @@ public class ReleaseObject {
 
     private void showLockedElementsIfAny(final Set<Long> lockedList) {
         if (!lockedList.isEmpty()) {
-            Logging.logInfo("LockFailedElements:", LOGGER);
+            Logging.logInfo(lockedList.size() + " elements not released since they could not be locked", LOGGER);
+            Logging.logDebug("LockFailedElements: " + lockedList, LOGGER);
             final StringBuilder errorMsg = new StringBuilder(bundle.getString("errorLocked")).append(":\n\n");
 
-            for (final Object locked : lockedList) {
-                Logging.logInfo("  id:" + locked, LOGGER);
-                errorMsg.append(createErrorString(locked));
+            for (final String name : getElementNames().resolve(lockedList).values()) {
+                errorMsg.append(name);
             }
             dialog.showError(bundle.getString("errorLocked"), errorMsg.toString());
         }
@@ -196,12 +241,18 @@ public class ReleaseObject {
     private boolean releaseStoreElement(final boolean checkOnly, final Set<Long> lockedList, final Set<Long> permList, final boolean releaseRecursively) {
         boolean result = true;
 
-        ServerActionHandle<? extends ReleaseProgress, Boolean> handle = null;
+        final CustomReleaseElements customReleaseElements = getCustomReleaseElements();
+        final boolean recursiveChecked = getWorkflowOptions().isReleaseRecursively();
 
-        final List<IDProvider> customReleaseElements = getCustomReleaseElements(WorkflowConstants.RELEASE_PAGEREF_ELEMENTS);
+        // elements to release with the flags to release them with
+        final Map<IDProvider, ReleaseFlags> releases = new LinkedHashMap<>();
+        final LongHashSet releaseKeys = new LongHashSet(releaseObjects.size());
+        // elements to validate and release in the order of the release objects
+        final List<IDProvider> candidates = new ArrayList<>();
+        final ValidationCache validationCache = ValidationCache.readFromSession(workflowScriptContext);
+        final boolean chunked = releaseRecursively && !checkOnly && getWorkflowOptions().getReleaseChunkSize() > 0;
 
         try {
-            Collections.sort(releaseObjects, new StoreComparator());
             for (final Object object : releaseObjects) {
                 if (!(object instanceof ReferenceEntry && ((ReferenceEntry) object).getReferencedObject() instanceof Entity)) {
                     final IDProvider currentObjForRelease;
@@ -217,7 +268,7 @@ public class ReleaseObject {
                                 && currentObjForRelease == ((PageRef) workflowScriptContext.getElement()).getPage())
                         || isMedia(currentObjForRelease) || isPageRefFolder(currentObjForRelease) || isSiteStoreRoot(currentObjForRelease)
                         || customReleaseElements.contains(currentObjForRelease)
-                        || ((new FormEvaluator(workflowScriptContext)).getCheckboxValue(WorkflowConstants.RECURSIVE_FORM_REFNAME)
+                        || (recursiveChecked
                                     && (isPageFolder(currentObjForRelease) || isPage(currentObjForRelease) || isMediaFolder(currentObjForRelease)
                                         || isMedia(currentObjForRelease) || isPageRefFolder(currentObjForRelease) || isPageRef(currentObjForRelease)
                                         || isDocumentGroup(currentObjForRelease) || isGcaFolder(currentObjForRelease)
@@ -227,104 +278,44 @@ public class ReleaseObject {
                             // only release items that are not yet released
                             if ((currentObjForRelease.getReleaseStatus() != IDProvider.RELEASED || releaseRecursively)
                                 && !isTemplate(currentObjForRelease) && !isDataSource(currentObjForRelease) && !isDataSourceFolder(currentObjForRelease)) {
-                                // check rules
-                                final String validationError = new FormValidator(workflowScriptContext).isValid(currentObjForRelease);
-                                if (validationError != null) {
-                                    validationErrorList.add(validationError);
-                                }
-                                // check rules for sections of pages (as checkrules is not
-                                // recursive)
-                                if (isPage(currentObjForRelease)) {
-                                    for (final Section<?> section : currentObjForRelease.getChildren(Section.class, true)) {
-                                        final String validationErrorsSection = new FormValidator(workflowScriptContext).isValid(section);
-                                        if (validationErrorsSection != null) {
-                                            validationErrorList.add(validationErrorsSection);
-                                        }
-                                    }
-                                }
-								if (releaseRecursively && isChildrenOf(currentObjForRelease, workflowScriptContext.getElement())) {
-									continue;
-								}
-                                if (validationErrorList.isEmpty()) {
-                                    // check release
-                                    if (currentObjForRelease == workflowScriptContext.getElement()) {
-                                        // unlock element that runs the workflow
-                                        currentObjForRelease.setLock(false, false);
-                                    }
-
-                                    if (isPageRef(currentObjForRelease)) {
-                                        // in order to decide if a pageref can be released, one has
-                                        // to check if the referenced page exists
-                                        final IDProvider.DependentReleaseType releaseType;
-                                        if(checkOnly) {
-                                            releaseType = IDProvider.DependentReleaseType.DEPENDENT_RELEASE_NEW_ONLY;
-                                        } else {
-                                            releaseType = IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE;
-                                        }
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, true, false, releaseType);
-
-                                    } else if (isPageRefFolder(currentObjForRelease)) {
-                                        // in order to decide if a pageref can be released, one has
-                                        // to check if the referenced page exists
-                                        final IDProvider.DependentReleaseType releaseType;
-                                        if(checkOnly) {
-                                            releaseType = IDProvider.DependentReleaseType.DEPENDENT_RELEASE_NEW_ONLY;
-                                        } else {
-                                            releaseType = IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE;
-                                        }
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, true, releaseRecursively, releaseType);
-
-                                    } else if (isPage(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, true, false,
-                                            IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (isPageFolder(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, true, releaseRecursively,
-                                                IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (isDocumentGroup(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, true, false,
-                                            IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (isMedia(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, true, false,
-                                            IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (isMediaFolder(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, true, releaseRecursively,
-                                                IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (isGcaPage(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, false, false,
-                                            IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (isGcaFolder(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, false, releaseRecursively,
-                                                IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (currentObjForRelease instanceof ProjectProperties) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, false, false,
-                                            IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-
-                                    } else if (isSiteStoreRoot(currentObjForRelease)) {
-                                        handle = AccessUtil.release(currentObjForRelease, checkOnly, false, releaseRecursively,
-                                                IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
-                                    }
-
-                                    result = handleResult(lockedList, permList, handle, currentObjForRelease);
-                                    if (currentObjForRelease.equals(workflowScriptContext.getElement())) {
-                                        currentObjForRelease.setLock(true, false);
-                                    }
-                                } else {
-                                    Logging.logError("Validation failure during release!", LOGGER);
-                                    result = false;
-                                }
+                                candidates.add(currentObjForRelease);
                             }
                         }
                     }
 
                 }
             }
+
+            // check rules of all elements first, the errors are added in the order of the elements
+            final List<List<String>> validationErrors =
+                new ReleaseValidation(getFormValidator(), getWorkflowOptions().getValidationThreads(), validationCache).validate(candidates);
+            validationCache.logStatistics();
+            // the elements that fail to release are mostly candidates, so their names need no lookup
+            getElementNames().addKnownElements(candidates);
+            for (int i = 0; i < candidates.size(); i++) {
+                final IDProvider currentObjForRelease = candidates.get(i);
+                validationErrorList.addAll(validationErrors.get(i));
+                if (releaseRecursively && !chunked && isChildrenOf(currentObjForRelease, workflowScriptContext.getElement())) {
+                    continue;
+                }
+                if (validationErrorList.isEmpty()) {
+                    // a chunked release releases the collected children one by one instead of the folders recursively
+                    final ReleaseFlags releaseFlags = getReleaseFlags(currentObjForRelease, checkOnly, releaseRecursively && !chunked);
+                    if (releaseFlags != null && releaseKeys.add(ElementKey.of(currentObjForRelease))) {
+                        releases.put(currentObjForRelease, releaseFlags);
+                    }
+                } else {
+                    Logging.logError("Validation failure during release!", LOGGER);
+                    result = false;
+                }
+            }
+
+            final ReleaseCheckpoint releaseCheckpoint =
+                chunked ? ReleaseCheckpoint.readFromSession(workflowScriptContext, workflowScriptContext.getElement()) : null;
+            result = releaseInWaves(releases, lockedList, permList, releaseCheckpoint) && result;
+            if (chunked && result) {
+                ReleaseCheckpoint.removeFromSession(workflowScriptContext);
+            }
         } catch (final Exception e) {
             Logging.logError("Exception during Release ", e, LOGGER);
             result = false;
@@ -332,6 +323,151 @@ public class ReleaseObject {
         return result;
     }
 
+    /**
+     * Determines the flags to release the given element with.
+     *
+     * @param idProvider         the element to release.
+     * @param checkOnly          Determines if the release should only be checked.
+     * @param releaseRecursively Determines if folders are released recursively.
+     * @return the flags or null if the element type is not released by this workflow.
+     */
+    private static ReleaseFlags getReleaseFlags(final IDProvider idProvider, final boolean checkOnly, final boolean releaseRecursively) {
+        if (isPageRef(idProvider) || isPageRefFolder(idProvider)) {
+            // in order to decide if a pageref can be released, one has
+            // to check if the referenced page exists
+            final IDProvider.DependentReleaseType releaseType;
+            if (checkOnly) {
+                releaseType = IDProvider.DependentReleaseType.DEPENDENT_RELEASE_NEW_ONLY;
+            } else {
+                releaseType = IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE;
+            }
+            return new ReleaseFlags(checkOnly, true, isPageRefFolder(idProvider) && releaseRecursively, releaseType);
+
+        } else if (isPage(idProvider)) {
+            return new ReleaseFlags(checkOnly, true, false, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+
+        } else if (isPageFolder(idProvider)) {
+            return new ReleaseFlags(checkOnly, true, releaseRecursively, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+
+        } else if (isDocumentGroup(idProvider) || isMedia(idProvider)) {
+            return new ReleaseFlags(checkOnly, true, false, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+
+        } else if (isMediaFolder(idProvider)) {
+            return new ReleaseFlags(checkOnly, true, releaseRecursively, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+
+        } else if (isGcaPage(idProvider)) {
+            return new ReleaseFlags(checkOnly, false, false, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+
+        } else if (isGcaFolder(idProvider)) {
+            return new ReleaseFlags(checkOnly, false, releaseRecursively, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+
+        } else if (idProvider instanceof ProjectProperties) {
+            return new ReleaseFlags(checkOnly, false, false, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+
+        } else if (isSiteStoreRoot(idProvider)) {
+            return new ReleaseFlags(checkOnly, false, releaseRecursively, IDProvider.DependentReleaseType.NO_DEPENDENT_RELEASE);
+        }
+        return null;
+    }
+
+    /**
+     * Releases the elements in the waves determined by {@link ReleaseWaves}. Elements that are released anyway by the recursive release of
+     * one of their parents are skipped. Up to {@link #getMaxReleasesInFlight()} server actions are kept running at once, but all releases
+     * of a wave are finished before the releases of the next wave are started.
+     * <p>
+     * With a checkpoint the releases are split into chunks of {@link WorkflowOptions#getReleaseChunkSize()} elements. Every chunk is
+     * finished and checkpointed before the next one is started, elements of completed chunks of an earlier attempt are skipped.
+     *
+     * @param releases          the elements to release with the flags to release them with.
+     * @param lockedList        the list to add elements to that could not be locked.
+     * @param permList          the list to add elements to that could not be released due to missing permissions.
+     * @param releaseCheckpoint the checkpoint of a chunked release, null to release without chunks.
+     * @return true if successful.
+     */
+    private boolean releaseInWaves(final Map<IDProvider, ReleaseFlags> releases, final Set<Long> lockedList, final Set<Long> permList,
+                                   final ReleaseCheckpoint releaseCheckpoint) {
+        final ReleaseMetrics releaseMetrics = new ReleaseMetrics();
+        final List<ReleaseProgressListener> listeners = new ArrayList<>();
+        listeners.add(releaseMetrics);
+        if (releaseCheckpoint != null) {
+            listeners.add(releaseCheckpoint);
+        }
+        final int chunkSize = getWorkflowOptions().getReleaseChunkSize();
+        int chunkCount = 0;
+        final ReleasePipeline releasePipeline = new ReleasePipeline(getMaxReleasesInFlight(), workflowScriptContext.getElement(), lockedList,
+                                                                    permList, listeners);
+        try {
+            final List<List<IDProvider>> waves = ReleaseWaves.build(releases.keySet());
+            for (int i = 0; i < waves.size(); i++) {
+                Logging.logInfo("Release wave " + (i + 1) + " of " + waves.size() + " with " + waves.get(i).size() + " elements", LOGGER);
+                for (final IDProvider idProvider : waves.get(i)) {
+                    final ReleaseFlags releaseFlags = releases.get(idProvider);
+                    if (isCoveredByRecursiveRelease(idProvider, releaseFlags, releases)) {
+                        Logging.logInfo("Element with Id '" + idProvider.getId() + "' is released with its parent", LOGGER);
+                    } else if (releaseCheckpoint != null && releaseCheckpoint.isReleased(idProvider)) {
+                        Logging.logDebug("Element with Id '" + idProvider.getId() + "' has been released by an earlier attempt", LOGGER);
+                    } else {
+                        releasePipeline.submit(idProvider, releaseFlags);
+                        if (releaseCheckpoint != null && ++chunkCount >= chunkSize) {
+                            releasePipeline.drain();
+                            releaseCheckpoint.completeChunk(workflowScriptContext);
+                            chunkCount = 0;
+                        }
+                    }
+                }
+                releasePipeline.drain();
+                if (releaseCheckpoint != null) {
+                    releaseCheckpoint.completeChunk(workflowScriptContext);
+                    chunkCount = 0;
+                }
+            }
+        } finally {
+            releasePipeline.drain();
+            if (releaseCheckpoint != null) {
+                // keep the finished releases of an interrupted chunk as well, they are checked again on the next attempt
+                releaseCheckpoint.completeChunk(workflowScriptContext);
+            }
+            releaseMetrics.logSummary();
+        }
+        return releasePipeline.isSuccessful();
+    }
+
+    /**
+     * Returns the maximum number of release server actions that may run at once, configured with the custom task attribute
+     * {@link WorkflowConstants#WF_MAX_RELEASES_IN_FLIGHT}.
+     *
+     * @return the maximum number of release server actions.
+     */
+    private int getMaxReleasesInFlight() {
+        return getWorkflowOptions().getMaxReleasesInFlight();
+    }
+
+    /**
+     * Sets the options of the workflow step, so they aren't read again.
+     *
+     * @param workflowOptions the options to use.
+     */
+    void setWorkflowOptions(final WorkflowOptions workflowOptions) {
+        this.workflowOptions = workflowOptions;
+    }
+
+    private WorkflowOptions getWorkflowOptions() {
+        if (workflowOptions == null) {
+            workflowOptions = WorkflowOptions.read(workflowScriptContext);
+        }
+        return workflowOptions;
+    }
+
+    private boolean isCoveredByRecursiveRelease(final IDProvider idProvider, final ReleaseFlags releaseFlags,
+                                                final Map<IDProvider, ReleaseFlags> releases) {
+        for (final Map.Entry<IDProvider, ReleaseFlags> release : releases.entrySet()) {
+            if (release.getValue().covers(releaseFlags) && isChildrenOf(idProvider, release.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static boolean isDataSourceFolder(final IDProvider idProvider) {
         return idProvider instanceof ContentFolder;
     }
@@ -386,35 +522,39 @@ public class ReleaseObject {
 
 
     private boolean isChildrenOf(final IDProvider children, final IDProvider parent) {
-        if (children.getStore() != parent.getStore()) {
-            return false;
-        }
-        IDProvider currentParent = children.getParent();
-        while (currentParent != null) {
-            if (currentParent.getId() == parent.getId()) {
-                return true;
-            }
-            currentParent = currentParent.getParent();
+        return getAncestorIndex().isDescendantOf(children, parent);
+    }
+
+    private AncestorIndex getAncestorIndex() {
+        if (ancestorIndex == null) {
+            ancestorIndex = new AncestorIndex(workflowScriptContext.getElement(), RecursiveChildren.readFromSession(workflowScriptContext));
         }
-        return false;
+        return ancestorIndex;
     }
 
 
-    private static boolean handleResult(final Set<Long> lockedList, final Set<Long> permList, final ServerActionHandle<? extends ReleaseProgress, Boolean> handle,
-                                        final IDProvider idProvider) {
+    /**
+     * Collects the result of a finished release server action and reports it to the given listeners.
+     *
+     * @param lockedList the list to add elements to that could not be locked.
+     * @param permList   the list to add elements to that could not be released due to missing permissions.
+     * @param handle     the handle of the server action, may be null.
+     * @param idProvider the released element.
+     * @param listeners  the listeners to report the result to.
+     * @return true if successful.
+     */
+    static boolean handleResult(final Set<Long> lockedList, final Set<Long> permList, final ServerActionHandle<? extends ReleaseProgress, Boolean> handle,
+                                final IDProvider idProvider, final List<ReleaseProgressListener> listeners) {
         boolean result = true;
         if (handle != null) {
+            ReleaseProgress progress = null;
             try {
                 handle.checkAndThrow();
                 result = handle.getResult();
-                Logging.logInfo("Release Result: " + result, LOGGER);
-                final ReleaseProgress progress = handle.getProgress(true);
+                Logging.logDebug("Release Result of element with Id '" + idProvider.getId() + "': " + result, LOGGER);
+                progress = handle.getProgress(true);
                 final Set<Long> lockedFailed = progress.getLockFailedElements();
                 final Set<Long> missingPermission = progress.getMissingPermissionElements();
-                Logging.logInfo("Released Elements:", LOGGER);
-                for (final Long released : progress.getReleasedElements()) {
-                    Logging.logInfo("  id:" + released, LOGGER);
-                }
                 if (lockedFailed != null && !lockedFailed.isEmpty()) {
                     lockedList.addAll(lockedFailed);
                     result = false;
@@ -427,76 +567,129 @@ public class ReleaseObject {
                 Logging.logError("Exception during Release of " + idProvider, e, LOGGER);
                 result = false;
             }
+            for (final ReleaseProgressListener listener : listeners) {
+                listener.releaseFinished(idProvider, progress, result);
+            }
         }
         return result;
     }
 
-    private List<IDProvider> getCustomReleaseElements(final String type) {
-        final List<IDProvider> customReleaseElements = new ArrayList<>();
-        if (type.equals(WorkflowConstants.RELEASE_PAGEREF_ELEMENTS)) {
-            final Object releasePageRefElements = workflowScriptContext.getSession().get(WorkflowConstants.RELEASE_PAGEREF_ELEMENTS);
-            if (releasePageRefElements != null) {
-                @SuppressWarnings("unchecked")
-                final List<String> releasePageRefUids = (List<String>) releasePageRefElements;
-                for (final String pageRefUid : releasePageRefUids) {
-                    final PageRef pageRef = new StoreUtil(workflowScriptContext).loadPageRefByUid(pageRefUid);
-                    customReleaseElements.add(pageRef);
-                    customReleaseElements.add(pageRef.getPage());
-                }
+    /**
+     * Sets the pagerefs to release instead of the workflow element, so they aren't resolved again.
+     *
+     * @param customReleaseElements the resolved pagerefs.
+     */
+    void setCustomReleaseElements(final CustomReleaseElements customReleaseElements) {
+        this.customReleaseElements = customReleaseElements;
+    }
+
+    /**
+     * Sets the service to validate the released elements with, so that the releases of a workflow run share it.
+     *
+     * @param validationService the service to use.
+     */
+    void setValidationService(final ValidationService validationService) {
+        this.validationService = validationService;
+    }
+
+    private FormValidator getFormValidator() {
+        if (formValidator == null) {
+            if (validationService == null) {
+                validationService = new ValidationService(workflowScriptContext);
             }
+            formValidator = new FormValidator(workflowScriptContext, validationService);
+        }
+        return formValidator;
+    }
+
+    private CustomReleaseElements getCustomReleaseElements() {
+        if (customReleaseElements == null) {
+            customReleaseElements = CustomReleaseElements.resolve(workflowScriptContext, getWorkflowOptions().getReleasePageRefUids());
         }
         return customReleaseElements;
     }
 
     /**
-     * This method is used to release an entity.
+     * This method is used to release entities. All entities are validated first, they are released in one go and only if all of them are
+     * valid. Every session is committed once and the content2 object is refreshed once at the end.
      *
-     * @param content2 The content2 object of the entity.
-     * @param entity The Entity to release.
-     * @param checkOnly Determines if the method should do only a check or really release the object.
+     * @param content2 The content2 object of the entities.
+     * @param entities The Entities to release.
+     * @param checkOnly Determines if the method should do only a check or really release the objects.
      * @return true if successful.
      */
-    private boolean releaseEntity(final Content2 content2, final Entity entity, final boolean checkOnly) {
+    private boolean releaseEntities(final Content2 content2, final List<Entity> entities, final boolean checkOnly) {
         boolean result = true;
 
-        final String validationError = new FormValidator(workflowScriptContext).isValid(content2, entity);
-        if (validationError == null) {
-            if (!checkOnly) {
+        final List<String> validationErrors =
+            new ReleaseValidation(getFormValidator(), getWorkflowOptions().getValidationThreads()).validateEntities(content2, entities);
+        for (final String validationError : validationErrors) {
+            if (validationError != null) {
+                Logging.logError("Validation failure during release!", LOGGER);
+                validationErrorList.add(validationError);
+                result = false;
+            }
+        }
+        if (result && !checkOnly && !entities.isEmpty()) {
+            // entities of one content2 object normally share their session, but every session is committed once
+            final Map<Session, Boolean> sessions = new IdentityHashMap<>();
+            for (final Entity entity : entities) {
                 entity.refresh();
-                Session session = entity.getSession();
+                final Session session = entity.getSession();
                 session.release(entity);
+                sessions.put(session, Boolean.TRUE);
+            }
+            for (final Session session : sessions.keySet()) {
                 session.commit();
-                content2.refresh();
-                content2.getParent().refresh();
             }
-        } else {
-            Logging.logError("Validation failure during release!", LOGGER);
-            validationErrorList.add(validationError);
-            result = false;
+            content2.refresh();
+            content2.getParent().refresh();
+            Logging.logInfo("Released " + entities.size() + " entities of " + content2.getUid(), LOGGER);
         }
         return result;
     }
 
     /**
-     * Convenience method to generate an error message for an object.
+     * Returns the entities a release started on a datasource releases: the entity of the workflow and the entities of the same content2
+     * object whose key values are stored in the session with {@link WorkflowConstants#WF_RELEASE_ENTITY_KEYS}.
      *
-     * @param id the object to generate a message for.
-     * @return the error message.
+     * @param workflowScriptContext the context to use.
+     * @return the entities to release, the entity of the workflow first.
      */
-    private String createErrorString(final Object id) {
-        final QueryAgent queryAgent = workflowScriptContext.requireSpecialist(QueryAgent.TYPE);
-        final Iterable<IDProvider> hits = queryAgent.answer("fs.id=" + id);
-        if (hits.iterator().hasNext()) {
-            final IDProvider element = hits.iterator().next();
-            if (element.hasUid()) {
-                return element.getDisplayName(new FsLocale(workflowScriptContext).getLanguage()) + " (" + element.getUid() + ", " + element.getId()
-                    + ")\n";
-            } else {
-                return "";
+    static List<Entity> getEntitiesToRelease(final WorkflowScriptContext workflowScriptContext) {
+        final ContentWorkflowable contentWorkflowable = (ContentWorkflowable) workflowScriptContext.getWorkflowable();
+        final Entity workflowEntity = contentWorkflowable.getEntity();
+        final List<Entity> entitiesToRelease = new ArrayList<>();
+        entitiesToRelease.add(workflowEntity);
+
+        final Object keys = workflowScriptContext.getSession().get(WorkflowConstants.WF_RELEASE_ENTITY_KEYS);
+        if (keys instanceof Collection) {
+            final Content2 content2 = contentWorkflowable.getContent();
+            final Set<Object> addedKeys = new HashSet<>();
+            addedKeys.add(workflowEntity.getKeyValue());
+            for (final Object key : (Collection<?>) keys) {
+                if (addedKeys.add(key)) {
+                    final Entity entity = content2.getEntity(key);
+                    if (entity != null) {
+                        entitiesToRelease.add(entity);
+                    } else {
+                        Logging.logWarning("Found no entity with key " + key + " in " + content2.getUid(), LOGGER);
+                    }
+                }
             }
-        } else {
-            Logging.logError("Found no element with id " + id, LOGGER);
-            return "";
         }
+        return entitiesToRelease;
+    }
+
+    /**
+     * Returns the resolver for the names of elements that could not be released.
+     *
+     * @return the resolver.
+     */
+    private ElementNames getElementNames() {
+        if (elementNames == null) {
+            elementNames = new ElementNames(workflowScriptContext);
+        }
+        return elementNames;
     }
 }
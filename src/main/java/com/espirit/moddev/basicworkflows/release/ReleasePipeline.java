@@ -0,0 +1,192 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.ServerActionHandle;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.ReleaseProgress;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps up to a fixed number of release server actions running at once and collects their results as they finish. Callers that need
+ * all started releases to be finished before going on (e.g. between page store and site store elements) call {@link #drain()}. While
+ * waiting for one of several running server actions with a free slot, the progress of the running server actions is reported to the
+ * {@link ReleaseProgressListener}s.
+ */
+final class ReleasePipeline {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ReleasePipeline.class;
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final int maxInFlight;
+    private final IDProvider workflowElement;
+    private final Set<Long> lockedList;
+    private final Set<Long> permList;
+    private final List<ReleaseProgressListener> listeners;
+    private final List<InFlightRelease> inFlight = new ArrayList<>();
+    private boolean successful = true;
+
+    /**
+     * Constructor for ReleasePipeline.
+     *
+     * @param maxInFlight     the maximum number of server actions running at once.
+     * @param workflowElement the element that runs the workflow, it gets unlocked during its release.
+     * @param lockedList      the list to add elements to that could not be locked.
+     * @param permList        the list to add elements to that could not be released due to missing permissions.
+     * @param listeners       the listeners to report the progress of the releases to.
+     */
+    ReleasePipeline(final int maxInFlight, final IDProvider workflowElement, final Set<Long> lockedList, final Set<Long> permList,
+                    final List<ReleaseProgressListener> listeners) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.workflowElement = workflowElement;
+        this.lockedList = lockedList;
+        this.permList = permList;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Starts the release of the given element. Blocks until a slot is free if the maximum number of server actions is running.
+     *
+     * @param idProvider   the element to release.
+     * @param releaseFlags the flags to release the element with.
+     */
+    void submit(final IDProvider idProvider, final ReleaseFlags releaseFlags) {
+        while (inFlight.size() >= maxInFlight) {
+            collectFinished();
+        }
+        if (idProvider.equals(workflowElement)) {
+            // unlock element that runs the workflow
+            idProvider.setLock(false, false);
+        }
+        inFlight.add(new InFlightRelease(idProvider, releaseFlags.release(idProvider)));
+    }
+
+    /**
+     * Waits for all started server actions to finish.
+     */
+    void drain() {
+        while (!inFlight.isEmpty()) {
+            collectFinished();
+        }
+    }
+
+    /**
+     * Checks if all collected releases were successful.
+     *
+     * @return true if successful.
+     */
+    boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * Collects all finished server actions. If none has finished yet and a single server action is running or no slot is free, blocks on
+     * the oldest one, as a sequential release does. Otherwise waits for the first one to finish and reports the progress of the running
+     * ones meanwhile.
+     */
+    private void collectFinished() {
+        if (collectFinishedReleases() || inFlight.isEmpty()) {
+            return;
+        }
+        if (inFlight.size() == 1 || inFlight.size() >= maxInFlight) {
+            complete(inFlight.remove(0));
+            return;
+        }
+        long lastReportNanos = System.nanoTime();
+        while (!collectFinishedReleases() && !inFlight.isEmpty()) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // stop polling and wait for the oldest release
+                complete(inFlight.remove(0));
+                return;
+            }
+            if (System.nanoTime() - lastReportNanos >= REPORT_INTERVAL_NANOS) {
+                lastReportNanos = System.nanoTime();
+                reportProgress();
+            }
+        }
+    }
+
+    /**
+     * Collects all finished server actions.
+     *
+     * @return true if at least one server action was collected.
+     */
+    private boolean collectFinishedReleases() {
+        boolean collected = false;
+        final Iterator<InFlightRelease> iterator = inFlight.iterator();
+        while (iterator.hasNext()) {
+            final InFlightRelease release = iterator.next();
+            if (release.handle == null || release.handle.isFinished()) {
+                iterator.remove();
+                complete(release);
+                collected = true;
+            }
+        }
+        return collected;
+    }
+
+    private void reportProgress() {
+        for (final InFlightRelease release : inFlight) {
+            // the detailed id sets are only fetched once the release is finished
+            final ReleaseProgress progress = release.handle.getProgress(false);
+            for (final ReleaseProgressListener listener : listeners) {
+                listener.releaseRunning(release.idProvider, progress);
+            }
+        }
+    }
+
+    private void complete(final InFlightRelease release) {
+        successful = ReleaseObject.handleResult(lockedList, permList, release.handle, release.idProvider, listeners) && successful;
+        if (release.idProvider.equals(workflowElement)) {
+            release.idProvider.setLock(true, false);
+        }
+        Logging.logDebug("Release of element with Id '" + release.idProvider.getId() + "' collected, " + inFlight.size() + " still running",
+                         LOGGER);
+    }
+
+
+    /**
+     * A started release server action.
+     */
+    private static final class InFlightRelease {
+
+        private final IDProvider idProvider;
+        private final ServerActionHandle<? extends ReleaseProgress, Boolean> handle;
+
+        private InFlightRelease(final IDProvider idProvider, final ServerActionHandle<? extends ReleaseProgress, Boolean> handle) {
+            this.idProvider = idProvider;
+            this.handle = handle;
+        }
+    }
+}
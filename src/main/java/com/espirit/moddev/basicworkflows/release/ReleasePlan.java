@@ -0,0 +1,266 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
+import com.espirit.moddev.basicworkflows.util.WorkflowSessionHelper;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.ReferenceEntry;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.pagestore.Section;
+import de.espirit.firstspirit.access.store.sitestore.SiteStoreFolder;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.firstspirit.agency.StoreAgent;
+import de.espirit.or.schema.Entity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact result of the reference walk done by the find related objects step. It is stored in the workflow session, so that the
+ * test release and the release step only have to walk the references of elements that, or whose parents, changed in the meantime.
+ */
+class ReleasePlan implements Serializable {
+
+    private static final long serialVersionUID = 4263075939511286042L;
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ReleasePlan.class;
+
+    /**
+     * The reason why an element is part of the plan.
+     */
+    enum InclusionReason {
+        /**
+         * The element the workflow was started on.
+         */
+        START_ELEMENT,
+        /**
+         * A child of the start element in case of a recursive release.
+         */
+        RECURSIVE_CHILD,
+        /**
+         * An element referenced by a start element or child.
+         */
+        REFERENCE,
+        /**
+         * A changed parent folder that has to be released in the ContentCreator.
+         */
+        PARENT_FOLDER
+    }
+
+    private final boolean recursive;
+
+    private boolean releasable;
+
+    /**
+     * The sources by {@link ElementKey}.
+     */
+    private final Map<Long, Source> sources = new LinkedHashMap<>();
+
+    /**
+     * Constructor for ReleasePlan.
+     *
+     * @param recursive Determines if the plan was computed for a recursive release.
+     */
+    ReleasePlan(final boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    /**
+     * Reads the plan of the current workflow instance from the session.
+     *
+     * @param workflowScriptContext the context to use.
+     * @param releaseRecursively    Determines if the plan is needed for a recursive release.
+     * @return the plan or null if there is none that was computed for the same kind of release without release issues.
+     */
+    static ReleasePlan readFromSession(final WorkflowScriptContext workflowScriptContext, final boolean releaseRecursively) {
+        final Object plan = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.WF_RELEASE_PLAN);
+        if (plan instanceof ReleasePlan && ((ReleasePlan) plan).recursive == releaseRecursively) {
+            final ReleasePlan releasePlan = (ReleasePlan) plan;
+            if (!releasePlan.releasable) {
+                // the release issues were either fixed in between or the release was forced, the recorded references can't be trusted
+                Logging.logInfo("Release plan was computed with release issues, references are collected again", LOGGER);
+                return null;
+            }
+            Logging.logInfo("Using release plan for " + releasePlan.sources.size() + " elements", LOGGER);
+            return releasePlan;
+        }
+        return null;
+    }
+
+    /**
+     * Writes this plan to the session of the current workflow instance.
+     *
+     * @param workflowScriptContext the context to use.
+     */
+    void writeToSession(final WorkflowScriptContext workflowScriptContext) {
+        workflowScriptContext.getSession().put(WorkflowConstants.WF_RELEASE_PLAN, this);
+    }
+
+    /**
+     * Records the references found for an element.
+     *
+     * @param element    the element whose references were collected.
+     * @param reason     the reason why the element is released.
+     * @param references the references as returned by the {@link WorkflowObject}.
+     */
+    void addSource(final IDProvider element, final InclusionReason reason, final Collection<Object> references) {
+        final Source source = new Source(element.getId(), element.getStore().getType(), getState(element), reason);
+        for (final Object reference : references) {
+            if (reference instanceof ReferenceEntry) {
+                final ReferenceEntry referenceEntry = (ReferenceEntry) reference;
+                final IDProvider target = referenceEntry.getReferencedElement();
+                // entities and broken references are never released by the ReleaseObject, sections are released with their page
+                if (target != null && !(referenceEntry.getReferencedObject() instanceof Entity) && !(target instanceof Section)) {
+                    source.targets.add(new Target(target.getId(), target.getStore().getType(), InclusionReason.REFERENCE,
+                                                  referenceEntry.isType(ReferenceEntry.MEDIA_STORE_REFERENCE)));
+                }
+            } else if (reference instanceof IDProvider) {
+                final IDProvider target = (IDProvider) reference;
+                source.targets.add(new Target(target.getId(), target.getStore().getType(), InclusionReason.PARENT_FOLDER, false));
+            }
+        }
+        sources.put(ElementKey.of(element), source);
+    }
+
+    /**
+     * Returns the objects to release for the given element. The references recorded in the plan are reused if neither the element nor
+     * one of its parents changed or was released since the plan was computed, otherwise they are collected again with the given workflow
+     * object. The parents matter since the references of the parents of never released elements and changed parent folders are
+     * released as well.
+     *
+     * @param workflowScriptContext the context to use.
+     * @param workflowObject        the workflow object used to collect the references of changed elements.
+     * @param element               the element to get the references for.
+     * @param releaseWithMedia      Determines if media references should be included.
+     * @param releaseRecursively    Determines if the references are collected for a recursive release.
+     * @return the objects to release.
+     */
+    Set<Object> getRefObjects(final WorkflowScriptContext workflowScriptContext, final WorkflowObject workflowObject, final IDProvider element,
+                              final boolean releaseWithMedia, final boolean releaseRecursively) {
+        final Source source = sources.get(ElementKey.of(element));
+        if (source == null || source.state != getState(element)) {
+            Logging.logInfo("Element with Id '" + element.getId() + "' is not planned or changed since the release plan was computed", LOGGER);
+            workflowObject.setStoreElement(element);
+            return workflowObject.getRefObjectsFromStoreElement(releaseWithMedia, releaseRecursively);
+        }
+
+        final Set<Object> refObjects = new HashSet<>();
+        // a recursive walk of a site store folder only collects the references of its children, which are sources of their own
+        if (releaseRecursively && element instanceof SiteStoreFolder) {
+            return refObjects;
+        }
+        final StoreAgent storeAgent = workflowScriptContext.requireSpecialist(StoreAgent.TYPE);
+        for (final Target target : source.targets) {
+            if (releaseWithMedia || !target.media) {
+                final IDProvider targetElement = storeAgent.getStore(target.storeType).getStoreElement(target.id);
+                if (targetElement != null) {
+                    Logging.logDebug("Planned " + target.reason + " with Id '" + target.id + "' for " + source.reason + " '" + source.id + "' ("
+                                     + source.storeType + ")", LOGGER);
+                    refObjects.add(targetElement);
+                } else {
+                    Logging.logWarning("Planned element with Id '" + target.id + "' not found", LOGGER);
+                }
+            }
+        }
+        return refObjects;
+    }
+
+    /**
+     * Sets the outcome of the rule check. A plan with release issues is not reused by the later steps.
+     *
+     * @param releasable Set to false if the rule check found release issues.
+     */
+    void setReleasable(final boolean releasable) {
+        this.releasable = releasable;
+    }
+
+    /**
+     * Combines the revisions and release states of the given element and its parents.
+     *
+     * @param element the element.
+     * @return a value that changes if the element or one of its parents is changed or released.
+     */
+    private static long getState(final IDProvider element) {
+        long state = 17;
+        IDProvider current = element;
+        while (current != null) {
+            state = 31 * state + (current.getRevision() != null ? current.getRevision().getId() : -1);
+            state = 31 * state + current.getReleaseStatus();
+            current = current.getParent();
+        }
+        return state;
+    }
+
+
+    /**
+     * An element whose references were collected.
+     */
+    private static final class Source implements Serializable {
+
+        private static final long serialVersionUID = -3114930846251563155L;
+
+        private final long id;
+        private final Store.Type storeType;
+        private final long state;
+        private final InclusionReason reason;
+        private final List<Target> targets = new ArrayList<>();
+
+        private Source(final long id, final Store.Type storeType, final long state, final InclusionReason reason) {
+            this.id = id;
+            this.storeType = storeType;
+            this.state = state;
+            this.reason = reason;
+        }
+    }
+
+
+    /**
+     * An element that has to be released together with a source.
+     */
+    private static final class Target implements Serializable {
+
+        private static final long serialVersionUID = 7950281437003566915L;
+
+        private final long id;
+        private final Store.Type storeType;
+        private final InclusionReason reason;
+        private final boolean media;
+
+        private Target(final long id, final Store.Type storeType, final InclusionReason reason, final boolean media) {
+            this.id = id;
+            this.storeType = storeType;
+            this.reason = reason;
+            this.media = media;
+        }
+    }
+}
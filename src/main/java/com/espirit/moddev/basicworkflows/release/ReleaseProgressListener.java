@@ -0,0 +1,47 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.ReleaseProgress;
+
+/**
+ * Receives the progress of release server actions, both while they are running and once they are finished. The listener is called on the
+ * thread that started the releases.
+ */
+interface ReleaseProgressListener {
+
+    /**
+     * Called periodically while the release of an element is running.
+     *
+     * @param element  the element whose release is running.
+     * @param progress the progress of the release so far, without the detailed sets of element ids.
+     */
+    void releaseRunning(IDProvider element, ReleaseProgress progress);
+
+    /**
+     * Called once the release of an element is finished.
+     *
+     * @param element    the released element.
+     * @param progress   the final progress of the release, null if the release failed before a progress was available.
+     * @param successful true if the release was successful.
+     */
+    void releaseFinished(IDProvider element, ReleaseProgress progress, boolean successful);
+}
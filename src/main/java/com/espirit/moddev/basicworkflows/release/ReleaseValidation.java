@@ -0,0 +1,208 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.FormValidator;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.contentstore.Content2;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+import de.espirit.firstspirit.access.store.pagestore.Section;
+import de.espirit.or.schema.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validates the elements of a release before the release starts. Every element and every section of a page is validated on its own,
+ * so the validations can be spread over a bounded number of threads. The errors are returned in the order of the elements and their
+ * sections, independent of the order the validations finish in.
+ */
+final class ReleaseValidation {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ReleaseValidation.class;
+
+    private final FormValidator formValidator;
+    private final int threads;
+    private final ValidationCache validationCache;
+
+    /**
+     * Constructor for ReleaseValidation.
+     *
+     * @param formValidator the validator to use, it has to be usable from several threads if more than one thread is used.
+     * @param threads       the maximum number of validations running at once, 1 to validate on the calling thread.
+     */
+    ReleaseValidation(final FormValidator formValidator, final int threads) {
+        this(formValidator, threads, null);
+    }
+
+    /**
+     * Constructor for ReleaseValidation that reuses earlier verdicts.
+     *
+     * @param formValidator   the validator to use, it has to be usable from several threads if more than one thread is used.
+     * @param threads         the maximum number of validations running at once, 1 to validate on the calling thread.
+     * @param validationCache the verdicts of earlier validations, may be null.
+     */
+    ReleaseValidation(final FormValidator formValidator, final int threads, final ValidationCache validationCache) {
+        this.formValidator = formValidator;
+        this.threads = Math.max(1, threads);
+        this.validationCache = validationCache;
+    }
+
+    /**
+     * Validates the given elements and the sections of the pages among them.
+     *
+     * @param elements the elements to validate.
+     * @return the validation errors of every element in the order of the elements, the errors of the element come first, followed by
+     * the errors of its sections.
+     */
+    List<List<String>> validate(final List<IDProvider> elements) {
+        final List<List<IDProvider>> units = new ArrayList<>(elements.size());
+        int unitCount = 0;
+        for (final IDProvider element : elements) {
+            final List<IDProvider> elementUnits = new ArrayList<>();
+            elementUnits.add(element);
+            // check rules for sections of pages (as checkrules is not recursive)
+            if (element instanceof Page) {
+                for (final Section<?> section : element.getChildren(Section.class, true)) {
+                    elementUnits.add(section);
+                }
+            }
+            units.add(elementUnits);
+            unitCount += elementUnits.size();
+        }
+
+        if (threads == 1 || unitCount < 2) {
+            final List<List<String>> errors = new ArrayList<>(units.size());
+            for (final List<IDProvider> elementUnits : units) {
+                final List<String> elementErrors = new ArrayList<>();
+                for (final IDProvider unit : elementUnits) {
+                    addError(elementErrors, isValid(unit));
+                }
+                errors.add(elementErrors);
+            }
+            return errors;
+        }
+        return validateInParallel(units, Math.min(threads, unitCount));
+    }
+
+    /**
+     * Validates the datasets of the given entities.
+     *
+     * @param content2 the content2 object of the entities.
+     * @param entities the entities to validate.
+     * @return the validation error of every entity in the order of the entities, null for valid entities.
+     */
+    List<String> validateEntities(final Content2 content2, final List<Entity> entities) {
+        final List<String> errors = new ArrayList<>(entities.size());
+        if (threads == 1 || entities.size() < 2) {
+            for (final Entity entity : entities) {
+                errors.add(formValidator.isValid(content2, entity));
+            }
+            return errors;
+        }
+
+        final int poolSize = Math.min(threads, entities.size());
+        Logging.logDebug("Validating " + entities.size() + " entities with " + poolSize + " threads", LOGGER);
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            final List<Future<String>> futures = new ArrayList<>(entities.size());
+            for (final Entity entity : entities) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return formValidator.isValid(content2, entity);
+                    }
+                }));
+            }
+            for (final Future<String> future : futures) {
+                errors.add(await(future));
+            }
+            return errors;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<List<String>> validateInParallel(final List<List<IDProvider>> units, final int poolSize) {
+        Logging.logDebug("Validating release elements with " + poolSize + " threads", LOGGER);
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        final List<List<Future<String>>> futures = new ArrayList<>(units.size());
+        try {
+            for (final List<IDProvider> elementUnits : units) {
+                final List<Future<String>> elementFutures = new ArrayList<>(elementUnits.size());
+                for (final IDProvider unit : elementUnits) {
+                    elementFutures.add(executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() {
+                            return isValid(unit);
+                        }
+                    }));
+                }
+                futures.add(elementFutures);
+            }
+
+            final List<List<String>> errors = new ArrayList<>(futures.size());
+            for (final List<Future<String>> elementFutures : futures) {
+                final List<String> elementErrors = new ArrayList<>();
+                for (final Future<String> future : elementFutures) {
+                    addError(elementErrors, await(future));
+                }
+                errors.add(elementErrors);
+            }
+            return errors;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String await(final Future<String> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Validation interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Validation failed", e.getCause());
+        }
+    }
+
+    private String isValid(final IDProvider unit) {
+        return validationCache != null ? validationCache.isValid(unit, formValidator) : formValidator.isValid(unit);
+    }
+
+    private static void addError(final List<String> errors, final String error) {
+        if (error != null) {
+            errors.add(error);
+        }
+    }
+}
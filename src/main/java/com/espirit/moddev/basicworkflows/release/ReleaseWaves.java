@@ -0,0 +1,248 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+import de.espirit.firstspirit.access.store.sitestore.PageRef;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the elements of a release by their dependencies. An element is released after
+ * <ul>
+ * <li>its parent folders,</li>
+ * <li>the page it references if it is a pageref and</li>
+ * <li>all page store elements if it is a site store element,</li>
+ * </ul>
+ * as far as these are part of the release, too. The elements are split into waves: every element of a wave only depends on elements of
+ * earlier waves, so the elements of one wave can be released at once.
+ */
+final class ReleaseWaves {
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ReleaseWaves.class;
+
+    /**
+     * Orders the elements of a wave by store (page store, site store, others) and id.
+     */
+    private static final Comparator<Node> NODE_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(final Node node1, final Node node2) {
+            if (node1.element == null || node2.element == null) {
+                // the barrier between page store and site store is no element, it is left out of the wave anyway
+                return Boolean.compare(node1.element != null, node2.element != null);
+            }
+            int result = Integer.compare(node1.storeRank, node2.storeRank);
+            if (result == 0) {
+                result = node1.storeType.compareTo(node2.storeType);
+            }
+            if (result == 0) {
+                result = Long.compare(node1.element.getId(), node2.element.getId());
+            }
+            return result;
+        }
+    };
+
+    private ReleaseWaves() {
+        // static helper
+    }
+
+    /**
+     * Splits the given elements into release waves.
+     *
+     * @param elements the elements to release.
+     * @return the waves in the order they have to be released.
+     */
+    static List<List<IDProvider>> build(final Collection<IDProvider> elements) {
+        final Map<Long, Node> nodes = new LinkedHashMap<>();
+        for (final IDProvider element : elements) {
+            final long key = ElementKey.of(element);
+            if (!nodes.containsKey(key)) {
+                nodes.put(key, new Node(element));
+            }
+        }
+        for (final Node node : nodes.values()) {
+            addDependencies(node, nodes);
+        }
+        addStoreBarrier(nodes.values());
+
+        final List<List<IDProvider>> waves = new ArrayList<>();
+        List<Node> wave = new ArrayList<>();
+        for (final Node node : nodes.values()) {
+            if (node.dependencies == 0) {
+                wave.add(node);
+            }
+        }
+        int ordered = 0;
+        while (!wave.isEmpty()) {
+            Collections.sort(wave, NODE_ORDER);
+            final List<IDProvider> waveElements = toElements(wave);
+            if (!waveElements.isEmpty()) {
+                waves.add(waveElements);
+            }
+            ordered += waveElements.size();
+            final List<Node> nextWave = new ArrayList<>();
+            for (final Node node : wave) {
+                for (final Node dependent : node.dependents) {
+                    dependent.dependencies--;
+                    if (dependent.dependencies == 0) {
+                        nextWave.add(dependent);
+                    }
+                }
+            }
+            wave = nextWave;
+        }
+
+        if (ordered < nodes.size()) {
+            // cyclic references (e.g. a page referencing the media that references the page) can't be ordered, release them last
+            final List<Node> cyclic = new ArrayList<>();
+            for (final Node node : nodes.values()) {
+                if (node.dependencies > 0) {
+                    cyclic.add(node);
+                }
+            }
+            Collections.sort(cyclic, NODE_ORDER);
+            Logging.logWarning("Release order of " + cyclic.size() + " elements with cyclic dependencies can't be determined", LOGGER);
+            waves.add(toElements(cyclic));
+        }
+        Logging.logDebug("Split " + nodes.size() + " elements into " + waves.size() + " release waves", LOGGER);
+        return waves;
+    }
+
+    private static void addDependencies(final Node node, final Map<Long, Node> nodes) {
+        // the nearest parent folder that is released as well, which depends on its own parents in turn
+        IDProvider parent = node.element.getParent();
+        while (parent != null) {
+            final Node parentNode = nodes.get(ElementKey.of(parent));
+            if (parentNode != null) {
+                parentNode.addDependent(node);
+                break;
+            }
+            parent = parent.getParent();
+        }
+
+        if (node.element instanceof PageRef) {
+            final Page page = ((PageRef) node.element).getPage();
+            final Node pageNode = page != null ? nodes.get(ElementKey.of(page)) : null;
+            if (pageNode != null) {
+                pageNode.addDependent(node);
+            }
+        }
+    }
+
+    /**
+     * Returns the rank of the given store in the release order, lower ranks are released first.
+     *
+     * @param type the store type.
+     * @return the rank of the store.
+     */
+    private static int getStoreRank(final Store.Type type) {
+        if (type == Store.Type.PAGESTORE) {
+            return 0;
+        } else if (type == Store.Type.SITESTORE) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /**
+     * Makes every site store element depend on every page store element, e.g. the pagerefs of a recursively released site store folder
+     * refer to pages that have to be released first. A barrier node in between keeps the number of dependencies linear.
+     *
+     * @param nodes the nodes of the release.
+     */
+    private static void addStoreBarrier(final Collection<Node> nodes) {
+        final List<Node> pageStoreNodes = new ArrayList<>();
+        final List<Node> siteStoreNodes = new ArrayList<>();
+        for (final Node node : nodes) {
+            if (node.storeType == Store.Type.PAGESTORE) {
+                pageStoreNodes.add(node);
+            } else if (node.storeType == Store.Type.SITESTORE) {
+                siteStoreNodes.add(node);
+            }
+        }
+        if (pageStoreNodes.isEmpty() || siteStoreNodes.isEmpty()) {
+            return;
+        }
+        final Node barrier = new Node();
+        for (final Node pageStoreNode : pageStoreNodes) {
+            pageStoreNode.addDependent(barrier);
+        }
+        for (final Node siteStoreNode : siteStoreNodes) {
+            barrier.addDependent(siteStoreNode);
+        }
+    }
+
+    private static List<IDProvider> toElements(final List<Node> nodes) {
+        final List<IDProvider> elements = new ArrayList<>(nodes.size());
+        for (final Node node : nodes) {
+            if (node.element != null) {
+                elements.add(node.element);
+            }
+        }
+        return elements;
+    }
+
+
+    /**
+     * An element of the release together with its dependencies, or the barrier between page store and site store without an element.
+     */
+    private static final class Node {
+
+        private final IDProvider element;
+        private final Store.Type storeType;
+        private final int storeRank;
+        private final Set<Node> dependents = new LinkedHashSet<>();
+        private int dependencies;
+
+        private Node(final IDProvider element) {
+            this.element = element;
+            storeType = element.getStore().getType();
+            storeRank = getStoreRank(storeType);
+        }
+
+        private Node() {
+            element = null;
+            storeType = null;
+            storeRank = -1;
+        }
+
+        private void addDependent(final Node dependent) {
+            if (dependent != this && dependents.add(dependent)) {
+                dependent.dependencies++;
+            }
+        }
+    }
+}
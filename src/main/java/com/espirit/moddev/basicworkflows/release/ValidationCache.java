@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+import com.espirit.moddev.basicworkflows.util.FormValidator;
+import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.Revision;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The validation verdicts of the released elements, stored in the workflow session. The test release validates every element, the
+ * release step reuses the verdicts of all elements whose revision didn't change in the meantime.
+ */
+class ValidationCache implements Serializable {
+
+    private static final long serialVersionUID = -2406375203526417195L;
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = ValidationCache.class;
+
+    private static final long NO_REVISION = -1;
+
+    private final ConcurrentMap<Long, Verdict> verdicts = new ConcurrentHashMap<>();
+
+    private transient AtomicInteger hits;
+    private transient AtomicInteger misses;
+
+    /**
+     * Reads the cache of the current workflow instance from the session, a new cache is stored in the session if there is none.
+     *
+     * @param workflowScriptContext the context to use.
+     * @return the cache.
+     */
+    static ValidationCache readFromSession(final WorkflowScriptContext workflowScriptContext) {
+        final Object cache = workflowScriptContext.getSession().get(WorkflowConstants.WF_VALIDATION_CACHE);
+        if (cache instanceof ValidationCache) {
+            return (ValidationCache) cache;
+        }
+        final ValidationCache validationCache = new ValidationCache();
+        workflowScriptContext.getSession().put(WorkflowConstants.WF_VALIDATION_CACHE, validationCache);
+        return validationCache;
+    }
+
+    /**
+     * Validates the given element unless there is a verdict for its current revision.
+     *
+     * @param element       the element to validate.
+     * @param formValidator the validator to use for elements without a current verdict.
+     * @return The error String or null.
+     */
+    String isValid(final IDProvider element, final FormValidator formValidator) {
+        final long revision = getRevisionId(element);
+        if (revision == NO_REVISION) {
+            return formValidator.isValid(element);
+        }
+        final long key = ElementKey.of(element);
+        final Verdict verdict = verdicts.get(key);
+        if (verdict != null && verdict.revision == revision) {
+            getHits().incrementAndGet();
+            return verdict.error;
+        }
+        getMisses().incrementAndGet();
+        final String error = formValidator.isValid(element);
+        verdicts.put(key, new Verdict(revision, error));
+        return error;
+    }
+
+    /**
+     * Logs how many verdicts were reused since the cache was read from the session.
+     */
+    void logStatistics() {
+        Logging.logInfo("Validation verdicts reused: " + getHits().get() + ", validated: " + getMisses().get(), LOGGER);
+    }
+
+    private synchronized AtomicInteger getHits() {
+        if (hits == null) {
+            hits = new AtomicInteger();
+        }
+        return hits;
+    }
+
+    private synchronized AtomicInteger getMisses() {
+        if (misses == null) {
+            misses = new AtomicInteger();
+        }
+        return misses;
+    }
+
+    private static long getRevisionId(final IDProvider element) {
+        final Revision revision = element.getRevision();
+        return revision != null ? revision.getId() : NO_REVISION;
+    }
+
+
+    /**
+     * The outcome of the validation of one revision of an element.
+     */
+    private static final class Verdict implements Serializable {
+
+        private static final long serialVersionUID = 5380207118232604391L;
+
+        private final long revision;
+        private final String error;
+
+        private Verdict(final long revision, final String error) {
+            this.revision = revision;
+            this.error = error;
+        }
+    }
+}
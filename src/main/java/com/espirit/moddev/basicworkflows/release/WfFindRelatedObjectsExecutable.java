@@ -20,16 +20,14 @@
 package com.espirit.moddev.basicworkflows.release;
 
 import com.espirit.moddev.basicworkflows.util.AbstractWorkflowExecutable;
-import com.espirit.moddev.basicworkflows.util.FormEvaluator;
-import com.espirit.moddev.basicworkflows.util.ReferenceResult;
+import com.espirit.moddev.basicworkflows.util.RecursiveChildren;
 import com.espirit.moddev.basicworkflows.util.StoreUtil;
 import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
-import com.espirit.moddev.basicworkflows.util.WorkflowSessionHelper;
+import com.espirit.moddev.basicworkflows.util.WorkflowOptions;
 
 import de.espirit.common.base.Logging;
 import de.espirit.common.util.Listable;
 import de.espirit.firstspirit.access.store.IDProvider;
-import de.espirit.firstspirit.access.store.Store;
 import de.espirit.firstspirit.access.store.StoreElement;
 import de.espirit.firstspirit.access.store.StoreElementFilter;
 import de.espirit.firstspirit.access.store.StoreElementFolder;
@@ -43,10 +41,12 @@ import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class is used to find the related objects of the workflow object and to determine if it can
@@ -75,17 +75,24 @@ public class WfFindRelatedObjectsExecutable extends AbstractWorkflowExecutable {
 
         final ResourceBundle bundle = loadResourceBundle(workflowScriptContext);
         boolean isReleasable = true;
+        final Content2Index content2Index = new Content2Index(workflowScriptContext);
+        ReleasePlan releasePlan = null;
 
-        final FormEvaluator formEvaluator = new FormEvaluator(workflowScriptContext);
-        boolean releaseRecursively = formEvaluator.getCheckboxValue(WorkflowConstants.RECURSIVE_FORM_REFNAME);
+        final WorkflowOptions workflowOptions = WorkflowOptions.read(workflowScriptContext);
+        final ExecutorService ruleCheckExecutor = createRuleCheckExecutor(workflowOptions);
+        final RefreshTracker refreshTracker = new RefreshTracker();
+        final OutgoingReferenceCache outgoingReferenceCache = new OutgoingReferenceCache();
+        boolean releaseRecursively = workflowOptions.isReleaseRecursively();
 
         // for recursive release, write children to session
+        List<IDProvider> childrenList = Collections.emptyList();
         if (releaseRecursively) {
             if (releaseElement instanceof PageFolder || releaseElement instanceof MediaFolder || releaseElement instanceof PageRefFolder
                     || releaseElement instanceof GCAFolder) {
-                final Map<Long, Store.Type> childrenIdMap = getChildrenOf(releaseElement, storeUtil);
-                Logging.logDebug("write IdMap: " + childrenIdMap.toString(), LOGGER);
-                writeObjectToSession(workflowScriptContext, WorkflowConstants.WF_RECURSIVE_CHILDREN, childrenIdMap);
+                childrenList = getChildrenOf(releaseElement, storeUtil);
+                final RecursiveChildren recursiveChildren = RecursiveChildren.of(childrenList);
+                Logging.logDebug("write children: " + recursiveChildren.toString(), LOGGER);
+                writeObjectToSession(workflowScriptContext, WorkflowConstants.WF_RECURSIVE_CHILDREN, recursiveChildren);
             } else {
                 releaseRecursively = false;
                 Logging.logWarning("Release start node is no folder! Release recursively set back to false!", LOGGER);
@@ -93,33 +100,45 @@ public class WfFindRelatedObjectsExecutable extends AbstractWorkflowExecutable {
         }
 
         // For A/B Testing it is possible to add an additional Workflow step that collects FirstSpirit Objects to release (i.e. Variants)
-		final Object relatedPageRefElements = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.RELATED_PAGEREF_ELEMENTS);
-        List<String> relatedPageRefUids = null;
-        if (relatedPageRefElements != null && relatedPageRefElements instanceof List) {
-            relatedPageRefUids = (List<String>) relatedPageRefElements;
-        }
-
-        // Check the collected FirstSpirit objects otherwise proceed as normal
-        if (relatedPageRefUids != null && !relatedPageRefUids.isEmpty()) {
-            for (final String pageRefUid : relatedPageRefUids) {
-                final PageRef pageRef = new StoreUtil(workflowScriptContext).loadPageRefByUid(pageRefUid);
-                if (hasReleaseIssues(workflowScriptContext, pageRef)) {
+        final List<String> relatedPageRefUids = workflowOptions.getRelatedPageRefUids();
+
+        try {
+            // the workflow object and the workflow options are set up once and shared by the checks of all elements
+            final ReleaseIssueChecker releaseIssueChecker =
+                new ReleaseIssueChecker(workflowScriptContext, workflowOptions, isStartedOnDatasource(workflowScriptContext), content2Index,
+                                        refreshTracker, outgoingReferenceCache, ruleCheckExecutor);
+            // Check the collected FirstSpirit objects otherwise proceed as normal
+            if (!relatedPageRefUids.isEmpty()) {
+                for (final String pageRefUid : relatedPageRefUids) {
+                    final PageRef pageRef = storeUtil.loadPageRefByUid(pageRefUid);
+                    if (releaseIssueChecker.hasReleaseIssues(pageRef, null)) {
+                        isReleasable = false;
+                    }
+                }
+            } else {
+                if (!isStartedOnDatasource(workflowScriptContext)) {
+                    releasePlan = new ReleasePlan(releaseRecursively);
+                }
+                // check if current element is releasable
+                if (releaseIssueChecker.hasReleaseIssues(workflowScriptContext.getElement(), releasePlan)) {
                     isReleasable = false;
                 }
-            }
-        } else {
-            // check if current element is releasable
-            if (hasReleaseIssues(workflowScriptContext, workflowScriptContext.getElement())) {
-                isReleasable = false;
-            }
-            if (releaseRecursively) {
-                final List<IDProvider> childrenList = new ArrayList<>();
-				final Map<Long, Store.Type> childrenIdMap = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.WF_RECURSIVE_CHILDREN);
-                childrenList.addAll(loadChildrenList(workflowScriptContext, childrenIdMap));
-                for (final IDProvider idProvider : childrenList) {
-                    isReleasable = !hasReleaseIssues(workflowScriptContext, idProvider) && isReleasable;
+                // the children were just collected, no need to resolve them from the session again
+                if (releaseRecursively && releaseIssueChecker.hasReleaseIssues(childrenList, releasePlan)) {
+                    isReleasable = false;
                 }
             }
+            refreshTracker.logStatistics();
+        } finally {
+            if (ruleCheckExecutor != null) {
+                ruleCheckExecutor.shutdownNow();
+            }
+        }
+
+        // share the collected references with the test release and release step
+        if (releasePlan != null) {
+            releasePlan.setReleasable(isReleasable);
+            releasePlan.writeToSession(workflowScriptContext);
         }
 
         if (isReleasable) {
@@ -149,13 +168,33 @@ public class WfFindRelatedObjectsExecutable extends AbstractWorkflowExecutable {
         Map<Object, Object> workflowSession = workflowScriptContext.getSession();
 		workflowSession.remove(WorkflowConstants.WF_NOT_RELEASED_ELEMENTS);
 		workflowSession.remove(WorkflowConstants.WF_BROKEN_REFERENCES);
+		workflowSession.remove(WorkflowConstants.WF_RELEASE_PLAN);
+		workflowSession.remove(WorkflowConstants.WF_VALIDATION_CACHE);
+		workflowSession.remove(WorkflowConstants.WF_RELEASE_CHECKPOINT);
 	}
 
 
+    /**
+     * Creates the executor to check referenced elements with if more than one thread is configured with the custom task attribute
+     * {@link WorkflowConstants#WF_RULE_CHECK_THREADS}.
+     *
+     * @param workflowOptions the options of the workflow step.
+     * @return the executor or null if the elements should be checked one after another.
+     */
+    private static ExecutorService createRuleCheckExecutor(final WorkflowOptions workflowOptions) {
+        final int threads = workflowOptions.getRuleCheckThreads();
+        if (threads > 1) {
+            Logging.logInfo("Checking references with " + threads + " threads", LOGGER);
+            return Executors.newFixedThreadPool(threads);
+        }
+        return null;
+    }
+
+
     @NotNull
-    private static Map<Long, Store.Type> getChildrenOf(final IDProvider releaseElement, final StoreUtil storeUtil) {
+    private static List<IDProvider> getChildrenOf(final IDProvider releaseElement, final StoreUtil storeUtil) {
         final StoreElementFilter filter;
-        final Map<Long, Store.Type> childrenIdMap = new HashMap<>();
+        final List<IDProvider> children = new ArrayList<>();
 
         filter = storeUtil.getChildrenSpecificFilter((StoreElementFolder) releaseElement);
         final Listable<StoreElement> childrenListable = releaseElement.getChildren(filter, true);
@@ -164,46 +203,9 @@ public class WfFindRelatedObjectsExecutable extends AbstractWorkflowExecutable {
         // recursively is set true
         for (final StoreElement child : childrenListable) {
             final IDProvider childIdProvider = (IDProvider) child;
-            childrenIdMap.put(childIdProvider.getId(), childIdProvider.getStore().getType());
+            children.add(childIdProvider);
             Logging.logInfo("IDProvider Element with Id '" + childIdProvider.getId() + "' added to release list", LOGGER);
         }
-        return childrenIdMap;
-    }
-
-    /**
-     * Checks if the referenced objects of the supplied idProvider can be released.
-     * In case of a recursive release additionally checks the idProvider itself.
-     * @param workflowScriptContext the context to use.
-     * @param idProvider to check.
-     * @return true if there will be some issues during release.
-     */
-    private static boolean hasReleaseIssues(final WorkflowScriptContext workflowScriptContext, final IDProvider idProvider) {
-        final WorkflowObject workflowObject = new WorkflowObject(workflowScriptContext);
-
-        final FormEvaluator formEvaluator = new FormEvaluator(workflowScriptContext);
-        final boolean releaseRecursively = formEvaluator.getCheckboxValue(WorkflowConstants.RECURSIVE_FORM_REFNAME);
-        workflowObject.setRecursively(releaseRecursively);
-
-        final ArrayList<Object> referencedObjects = new ArrayList<>();
-        if (idProvider != null) {
-            workflowObject.setStoreElement(idProvider);
-        }
-
-        if (isStartedOnDatasource(workflowScriptContext)) {
-            referencedObjects.addAll(workflowObject.getRefObjectsFromEntity(true));
-        } else {
-            referencedObjects.addAll(workflowObject.getRefObjectsFromStoreElement(true, false));
-        }
-
-        // check element itself in case of a recursive release, otherwise the element gets already checked by the elementStatusProvider.
-        if(releaseRecursively && idProvider != workflowScriptContext.getElement()) {
-            referencedObjects.add(idProvider);
-        }
-
-        final boolean releaseWithMedia = formEvaluator.getCheckboxValue("wf_releasewmedia");
-
-        final ReferenceResult referenceResult = workflowObject.checkReferences(referencedObjects, releaseWithMedia);
-
-        return referenceResult.hasReleaseIssues(releaseWithMedia);
+        return children;
     }
 }
@@ -20,20 +20,24 @@
 package com.espirit.moddev.basicworkflows.release;
 
 import com.espirit.moddev.basicworkflows.util.AbstractWorkflowExecutable;
-import com.espirit.moddev.basicworkflows.util.FormEvaluator;
-import com.espirit.moddev.basicworkflows.util.StoreUtil;
+import com.espirit.moddev.basicworkflows.util.ElementKey;
+import com.espirit.moddev.basicworkflows.util.LongHashSet;
+import com.espirit.moddev.basicworkflows.util.RecursiveChildren;
+import com.espirit.moddev.basicworkflows.util.ValidationService;
 import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
-import com.espirit.moddev.basicworkflows.util.WorkflowSessionHelper;
+import com.espirit.moddev.basicworkflows.util.WorkflowOptions;
 
 import de.espirit.common.base.Logging;
 import de.espirit.firstspirit.access.ReferenceEntry;
 import de.espirit.firstspirit.access.store.IDProvider;
 import de.espirit.firstspirit.access.store.Store;
 import de.espirit.firstspirit.access.store.contentstore.ContentWorkflowable;
+import de.espirit.firstspirit.access.store.pagestore.Page;
 import de.espirit.firstspirit.access.store.sitestore.PageRef;
 import de.espirit.firstspirit.access.store.sitestore.SiteStoreFolder;
 import de.espirit.firstspirit.access.store.sitestore.StartNode;
 import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.or.schema.Entity;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -62,37 +66,34 @@ public class WfReleaseExecutable extends AbstractWorkflowExecutable {
 
         final WorkflowObject workflowObject = new WorkflowObject(workflowScriptContext);
 
-        final FormEvaluator formEvaluator = new FormEvaluator(workflowScriptContext);
-        final boolean releaseWithMedia = formEvaluator.getCheckboxValue(WorkflowConstants.MEDIA_FORM_REFNAME);
-        final boolean releaseRecursively = formEvaluator.getCheckboxValue(WorkflowConstants.RECURSIVE_FORM_REFNAME);
+        final WorkflowOptions workflowOptions = WorkflowOptions.read(workflowScriptContext);
+        final boolean releaseWithMedia = workflowOptions.isReleaseWithMedia();
+        final boolean releaseRecursively = workflowOptions.isReleaseRecursively();
         workflowObject.setRecursively(releaseRecursively);
+        workflowObject.setDiscoveryParallelism(workflowOptions.getDiscoveryParallelism());
 
         final boolean releaseStatus;
         final List<Object> releaseObjects = new ArrayList<>();
 
         final List<IDProvider> childrenList = new ArrayList<>();
-        final Map<Long, Store.Type> childrenIdMap = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.WF_RECURSIVE_CHILDREN);
-        childrenList.addAll(loadChildrenList(workflowScriptContext, childrenIdMap));
+        childrenList.addAll(loadChildrenList(workflowScriptContext, RecursiveChildren.readFromSession(workflowScriptContext)));
 
         final IDProvider releaseElement = workflowScriptContext.getElement();
 
         // check test case or skip if wfDoFail is set
-        if (isNotFailed(workflowScriptContext)) {
-            final Object releasePageRefElements = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.RELEASE_PAGEREF_ELEMENTS);
-            List<String> releasePageRefUids = null;
-            if (releasePageRefElements != null && releasePageRefElements instanceof List) {
-                releasePageRefUids = (List<String>) releasePageRefElements;
-            }
+        if (workflowOptions.isNotFailed()) {
+            // one validation service for all releases of this step
+            final ValidationService validationService = new ValidationService(workflowScriptContext);
+            final CustomReleaseElements customReleaseElements =
+                CustomReleaseElements.resolve(workflowScriptContext, workflowOptions.getReleasePageRefUids());
 
-            if (releasePageRefUids != null && !releasePageRefUids.isEmpty()) {
-                for (final String pageRefUid : releasePageRefUids) {
-                    final StoreUtil storeUtil = new StoreUtil(workflowScriptContext);
-                    final PageRef pageRef = storeUtil.loadPageRefByUid(pageRefUid);
+            if (!customReleaseElements.isEmpty()) {
+                for (final PageRef pageRef : customReleaseElements.getPageRefs()) {
                     workflowObject.setStoreElement(pageRef);
                     // add referenced elements from pageref excluding the pagerefs retrieved from
                     // the session since they will be added afterwards
                     final Set<Object> refObjectsFromStoreElement = workflowObject.getRefObjectsFromStoreElement(releaseWithMedia, false);
-                    addReferencesExcludingPageRefsFromSession(refObjectsFromStoreElement, releasePageRefUids, releaseObjects);
+                    addReferencesExcludingPageRefsFromSession(refObjectsFromStoreElement, customReleaseElements.getUids(), releaseObjects);
                     // add the pageref (and page)
                     if ((pageRef.getPage()).getReleaseStatus() != IDProvider.RELEASED) {
                         releaseObjects.add(pageRef.getPage());
@@ -101,19 +102,28 @@ public class WfReleaseExecutable extends AbstractWorkflowExecutable {
                 }
                 // do release
                 final ReleaseObject releaseObject = new ReleaseObject(workflowScriptContext, releaseObjects);
+                releaseObject.setWorkflowOptions(workflowOptions);
+                releaseObject.setValidationService(validationService);
+                releaseObject.setCustomReleaseElements(customReleaseElements);
                 releaseStatus = releaseObject.release(false, releaseRecursively);
 
             } else if (isStartedOnDatasource(workflowScriptContext)) {
                 // do release of referenced media if checkbox is checked
-                final Set<Object> refObjectsFromEntity = workflowObject.getRefObjectsFromEntity(releaseWithMedia);
-                releaseObjects.addAll(refObjectsFromEntity);
+                final List<Entity> entities = ReleaseObject.getEntitiesToRelease(workflowScriptContext);
+                for (final Entity entity : entities) {
+                    releaseObjects.addAll(workflowObject.getRefObjectsFromEntity(entity, releaseWithMedia));
+                }
                 final ReleaseObject releaseObject = new ReleaseObject(workflowScriptContext, releaseObjects);
+                releaseObject.setWorkflowOptions(workflowOptions);
+                releaseObject.setValidationService(validationService);
+                releaseObject.setCustomReleaseElements(customReleaseElements);
                 final boolean releaseStatusWithoutEntity = releaseObject.release(false, releaseRecursively);
                 // release entity
                 if (releaseStatusWithoutEntity) {
-                    final ContentWorkflowable contentWorkflowable = (ContentWorkflowable) workflowScriptContext.getWorkflowable();
                     // do release
-                    final ReleaseObject releaseObjectWithEntity = new ReleaseObject(workflowScriptContext, contentWorkflowable.getEntity());
+                    final ReleaseObject releaseObjectWithEntity = new ReleaseObject(workflowScriptContext, entities);
+                    releaseObjectWithEntity.setWorkflowOptions(workflowOptions);
+                    releaseObjectWithEntity.setValidationService(validationService);
                     releaseStatus = releaseObjectWithEntity.release(false, releaseRecursively);
                 } else {
                     releaseStatus = false;
@@ -128,11 +138,14 @@ public class WfReleaseExecutable extends AbstractWorkflowExecutable {
                     releaseElementsWithPossibleChildren.addAll(childrenList);
                 }
 
-                addChildrenToReleaseObjects(workflowObject, releaseWithMedia, releaseRecursively, releaseObjects,
+                addChildrenToReleaseObjects(workflowScriptContext, workflowObject, releaseWithMedia, releaseRecursively, releaseObjects,
                     releaseElementsWithPossibleChildren);
 
                 // do release
                 final ReleaseObject releaseObject = new ReleaseObject(workflowScriptContext, releaseObjects);
+                releaseObject.setWorkflowOptions(workflowOptions);
+                releaseObject.setValidationService(validationService);
+                releaseObject.setCustomReleaseElements(customReleaseElements);
                 releaseStatus = releaseObject.release(false, releaseRecursively);
 
                 // check for never released start nodes in one or more parent folders
@@ -142,8 +155,7 @@ public class WfReleaseExecutable extends AbstractWorkflowExecutable {
                         for (StartNode startNode : neverReleasedStartNodes) {
                             Logging.logInfo("IDProvider Element with uid '" + startNode.getUid() + "' and id '" + startNode.getId() + "' has never been released.", LOGGER);
                         }
-                        final String suppressDialog = (String) workflowScriptContext.getSession().get("wfSuppressDialog");
-                        if (!WorkflowConstants.TRUE.equals(suppressDialog)) {
+                        if (!workflowOptions.isSuppressDialog()) {
                             showDialog(workflowScriptContext, bundle.getString(WorkflowConstants.ERROR_MSG),
                                        bundle.getString("neverReleasedStartNodes"));
                         }
@@ -182,8 +194,17 @@ public class WfReleaseExecutable extends AbstractWorkflowExecutable {
         return true;
     }
 
-    private static void addChildrenToReleaseObjects(final WorkflowObject workflowObject, final boolean releaseWithMedia, final boolean releaseRecursively,
-        final List<Object> releaseObjects, final List<IDProvider> releaseElementsWithPossibleChildren) {
+    private static void addChildrenToReleaseObjects(final WorkflowScriptContext workflowScriptContext, final WorkflowObject workflowObject,
+        final boolean releaseWithMedia, final boolean releaseRecursively, final List<Object> releaseObjects,
+        final List<IDProvider> releaseElementsWithPossibleChildren) {
+        final ReleasePlan releasePlan = ReleasePlan.readFromSession(workflowScriptContext, releaseRecursively);
+        // the keys of the elements already in the release list, so every element is added once
+        final LongHashSet releaseObjectKeys = new LongHashSet(releaseObjects.size() + releaseElementsWithPossibleChildren.size());
+        for (final Object releaseObject : releaseObjects) {
+            if (releaseObject instanceof IDProvider) {
+                releaseObjectKeys.add(ElementKey.of((IDProvider) releaseObject));
+            }
+        }
         for (final IDProvider storeElement : releaseElementsWithPossibleChildren) {
             // create workflowObject with current releasable storeElement
             workflowObject.setRecursively(releaseRecursively);
@@ -191,8 +212,18 @@ public class WfReleaseExecutable extends AbstractWorkflowExecutable {
 
             Logging.logInfo("IDProvider Element with Id '" + storeElement.getId() + "' added to release list", LOGGER);
             // add dependend objects to releaseObjects list
-            final Set<Object> refObjects = workflowObject.getRefObjectsFromStoreElement(releaseWithMedia, releaseRecursively);
+            final Set<Object> refObjects;
+            if (releasePlan != null) {
+                refObjects = releasePlan.getRefObjects(workflowScriptContext, workflowObject, storeElement, releaseWithMedia, releaseRecursively);
+            } else {
+                refObjects = workflowObject.getRefObjectsFromStoreElement(releaseWithMedia, releaseRecursively);
+            }
             releaseObjects.addAll(refObjects);
+            for (final Object refObject : refObjects) {
+                if (refObject instanceof IDProvider) {
+                    releaseObjectKeys.add(ElementKey.of((IDProvider) refObject));
+                }
+            }
 
             // logging id's only
             for (final Object refObject : refObjects) {
@@ -214,11 +245,13 @@ public class WfReleaseExecutable extends AbstractWorkflowExecutable {
 
             if (storeElement instanceof PageRef && (((PageRef) storeElement).getPage()).getReleaseStatus() != IDProvider.RELEASED) {
                 // if object is pageref, add page to release list if unreleased
-                releaseObjects.add(((PageRef) storeElement).getPage());
+                final Page page = ((PageRef) storeElement).getPage();
+                releaseObjects.add(page);
+                releaseObjectKeys.add(ElementKey.of(page));
             }
 
             // add the object itself to releaseObjects list
-            if (!releaseObjects.contains(storeElement)) {
+            if (releaseObjectKeys.add(ElementKey.of(storeElement))) {
                 releaseObjects.add(storeElement);
             }
         }
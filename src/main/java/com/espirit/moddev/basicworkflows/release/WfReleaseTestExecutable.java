@@ -20,18 +20,17 @@
 package com.espirit.moddev.basicworkflows.release;
 
 import com.espirit.moddev.basicworkflows.util.AbstractWorkflowExecutable;
-import com.espirit.moddev.basicworkflows.util.FormEvaluator;
-import com.espirit.moddev.basicworkflows.util.StoreUtil;
+import com.espirit.moddev.basicworkflows.util.RecursiveChildren;
+import com.espirit.moddev.basicworkflows.util.ValidationService;
 import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
-import com.espirit.moddev.basicworkflows.util.WorkflowSessionHelper;
+import com.espirit.moddev.basicworkflows.util.WorkflowOptions;
 
 import de.espirit.common.base.Logging;
 import de.espirit.firstspirit.access.ReferenceEntry;
 import de.espirit.firstspirit.access.store.IDProvider;
-import de.espirit.firstspirit.access.store.Store;
-import de.espirit.firstspirit.access.store.contentstore.ContentWorkflowable;
 import de.espirit.firstspirit.access.store.sitestore.PageRef;
 import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.or.schema.Entity;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -61,37 +60,33 @@ public class WfReleaseTestExecutable extends AbstractWorkflowExecutable {
 
         final WorkflowObject workflowObject = new WorkflowObject(workflowScriptContext);
 
-        final FormEvaluator formEvaluator = new FormEvaluator(workflowScriptContext);
-        final boolean releaseWithMedia = formEvaluator.getCheckboxValue(WorkflowConstants.MEDIA_FORM_REFNAME);
-        final boolean releaseRecursively = formEvaluator.getCheckboxValue(WorkflowConstants.RECURSIVE_FORM_REFNAME);
+        final WorkflowOptions workflowOptions = WorkflowOptions.read(workflowScriptContext);
+        final boolean releaseWithMedia = workflowOptions.isReleaseWithMedia();
+        final boolean releaseRecursively = workflowOptions.isReleaseRecursively();
         workflowObject.setRecursively(releaseRecursively);
 
         final boolean releaseStatus;
         final List<Object> releaseObjects = new ArrayList<>();
 
         final List<IDProvider> childrenList = new ArrayList<>();
-		final Map<Long, Store.Type> childrenIdMap = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.WF_RECURSIVE_CHILDREN);
-        childrenList.addAll(loadChildrenList(workflowScriptContext, childrenIdMap));
+        childrenList.addAll(loadChildrenList(workflowScriptContext, RecursiveChildren.readFromSession(workflowScriptContext)));
 
         final IDProvider releaseElement = workflowScriptContext.getElement();
 
         // check test case or skip if wfDoTestFail is set
-        if (isNotFailedTest(workflowScriptContext)) {
-			final Object releasePageRefElements = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.RELEASE_PAGEREF_ELEMENTS);
-            List<String> releasePageRefUids = null;
-            if (releasePageRefElements != null && releasePageRefElements instanceof List) {
-                releasePageRefUids = (List<String>) releasePageRefElements;
-            }
-
-            if (releasePageRefUids != null && !releasePageRefUids.isEmpty()) {
-                for (final String pageRefUid : releasePageRefUids) {
-                    final StoreUtil storeUtil = new StoreUtil(workflowScriptContext);
-                    final PageRef pageRef = storeUtil.loadPageRefByUid(pageRefUid);
+        if (workflowOptions.isNotFailedTest()) {
+            // one validation service for all releases of this step
+            final ValidationService validationService = new ValidationService(workflowScriptContext);
+            final CustomReleaseElements customReleaseElements =
+                CustomReleaseElements.resolve(workflowScriptContext, workflowOptions.getReleasePageRefUids());
+
+            if (!customReleaseElements.isEmpty()) {
+                for (final PageRef pageRef : customReleaseElements.getPageRefs()) {
                     workflowObject.setStoreElement(pageRef);
                     // add referenced elements from pageref excluding the pagerefs retrieved from
                     // the session since they will be added afterwards
                     final Set<Object> refObjectsFromStoreElement = workflowObject.getRefObjectsFromStoreElement(releaseWithMedia, false);
-                    addReferencesExcludingPageRefsFromSession(refObjectsFromStoreElement, releasePageRefUids, releaseObjects);
+                    addReferencesExcludingPageRefsFromSession(refObjectsFromStoreElement, customReleaseElements.getUids(), releaseObjects);
                     // add the pageref (and page)
                     if ((pageRef.getPage()).getReleaseStatus() != IDProvider.RELEASED) {
                         releaseObjects.add(pageRef.getPage());
@@ -100,18 +95,28 @@ public class WfReleaseTestExecutable extends AbstractWorkflowExecutable {
                 }
                 // do test release
                 final ReleaseObject releaseObject = new ReleaseObject(workflowScriptContext, releaseObjects);
+                releaseObject.setWorkflowOptions(workflowOptions);
+                releaseObject.setValidationService(validationService);
+                releaseObject.setCustomReleaseElements(customReleaseElements);
                 releaseStatus = releaseObject.release(true, releaseRecursively);
             } else if (isStartedOnDatasource(workflowScriptContext)) {
                 // do test release of referenced media if checkbox is checked
-                releaseObjects.addAll(workflowObject.getRefObjectsFromEntity(releaseWithMedia));
+                final List<Entity> entities = ReleaseObject.getEntitiesToRelease(workflowScriptContext);
+                for (final Entity entity : entities) {
+                    releaseObjects.addAll(workflowObject.getRefObjectsFromEntity(entity, releaseWithMedia));
+                }
                 // do test release
                 final ReleaseObject releaseObject = new ReleaseObject(workflowScriptContext, releaseObjects);
+                releaseObject.setWorkflowOptions(workflowOptions);
+                releaseObject.setValidationService(validationService);
+                releaseObject.setCustomReleaseElements(customReleaseElements);
                 final boolean releaseStatusWithoutEntity = releaseObject.release(true, releaseRecursively);
                 // test release entity
                 if (releaseStatusWithoutEntity) {
-                    final ContentWorkflowable contentWorkflowable = (ContentWorkflowable) workflowScriptContext.getWorkflowable();
                     // do release
-                    final ReleaseObject releaseObjectEntity = new ReleaseObject(workflowScriptContext, contentWorkflowable.getEntity());
+                    final ReleaseObject releaseObjectEntity = new ReleaseObject(workflowScriptContext, entities);
+                    releaseObjectEntity.setWorkflowOptions(workflowOptions);
+                    releaseObjectEntity.setValidationService(validationService);
                     releaseStatus = releaseObjectEntity.release(true, releaseRecursively);
                 } else {
                     releaseStatus = false;
@@ -125,7 +130,8 @@ public class WfReleaseTestExecutable extends AbstractWorkflowExecutable {
                     releaseElementsWithPossibleChildren.addAll(childrenList);
                 }
 
-                addChildrenToReleaseObjects(releaseWithMedia, workflowObject, releaseObjects, releaseElementsWithPossibleChildren);
+                addChildrenToReleaseObjects(workflowScriptContext, releaseWithMedia, releaseRecursively, workflowObject, releaseObjects,
+                                            releaseElementsWithPossibleChildren);
 
                 // do test release
                 for (final Object releaseObject : releaseObjects) {
@@ -135,6 +141,9 @@ public class WfReleaseTestExecutable extends AbstractWorkflowExecutable {
                 }
                 // do test release
                 final ReleaseObject releaseObject = new ReleaseObject(workflowScriptContext, releaseObjects);
+                releaseObject.setWorkflowOptions(workflowOptions);
+                releaseObject.setValidationService(validationService);
+                releaseObject.setCustomReleaseElements(customReleaseElements);
                 releaseStatus = releaseObject.release(true, releaseRecursively);
             }
         } else {
@@ -162,8 +171,10 @@ public class WfReleaseTestExecutable extends AbstractWorkflowExecutable {
         return true;
     }
 
-    private static void addChildrenToReleaseObjects(final boolean releaseWithMedia, final WorkflowObject workflowObject, final List<Object> releaseObjects,
-                                                    final List<IDProvider> releaseElementsWithPossibleChildren) {
+    private static void addChildrenToReleaseObjects(final WorkflowScriptContext workflowScriptContext, final boolean releaseWithMedia,
+                                                    final boolean releaseRecursively, final WorkflowObject workflowObject,
+                                                    final List<Object> releaseObjects, final List<IDProvider> releaseElementsWithPossibleChildren) {
+        final ReleasePlan releasePlan = ReleasePlan.readFromSession(workflowScriptContext, releaseRecursively);
         for (final IDProvider storeElement : releaseElementsWithPossibleChildren) {
             // create workflowObject with current releasable storeElement
             workflowObject.setStoreElement(storeElement);
@@ -172,7 +183,12 @@ public class WfReleaseTestExecutable extends AbstractWorkflowExecutable {
             releaseObjects.add(storeElement);
             Logging.logInfo("IDProvider Element with Id '" + storeElement.getId() + "' added to release list", LOGGER);
             // add dependend objects to releaseObjects list
-            final Set<Object> refObjects = workflowObject.getRefObjectsFromStoreElement(releaseWithMedia, false);
+            final Set<Object> refObjects;
+            if (releasePlan != null) {
+                refObjects = releasePlan.getRefObjects(workflowScriptContext, workflowObject, storeElement, releaseWithMedia, false);
+            } else {
+                refObjects = workflowObject.getRefObjectsFromStoreElement(releaseWithMedia, false);
+            }
             releaseObjects.addAll(refObjects);
 
             // logging id's only
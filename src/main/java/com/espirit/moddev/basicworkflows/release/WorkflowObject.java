@@ -19,23 +19,24 @@
  */
 package com.espirit.moddev.basicworkflows.release;
 
+import com.espirit.moddev.basicworkflows.util.AncestorIndex;
+import com.espirit.moddev.basicworkflows.util.ElementKey;
 import com.espirit.moddev.basicworkflows.util.FsException;
 import com.espirit.moddev.basicworkflows.util.FsLocale;
+import com.espirit.moddev.basicworkflows.util.LongHashSet;
+import com.espirit.moddev.basicworkflows.util.RecursiveChildren;
 import com.espirit.moddev.basicworkflows.util.ReferenceResult;
 import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
 import com.espirit.moddev.basicworkflows.util.WorkflowSessionHelper;
 
-import de.espirit.common.TypedFilter;
 import de.espirit.common.base.Logging;
-import de.espirit.common.util.Listable;
 import de.espirit.firstspirit.access.BaseContext;
+import de.espirit.firstspirit.access.Language;
 import de.espirit.firstspirit.access.ReferenceEntry;
 import de.espirit.firstspirit.access.store.IDProvider;
-import de.espirit.firstspirit.access.store.Store;
 import de.espirit.firstspirit.access.store.StoreElement;
 import de.espirit.firstspirit.access.store.contentstore.Content2;
 import de.espirit.firstspirit.access.store.contentstore.ContentFolder;
-import de.espirit.firstspirit.access.store.contentstore.ContentStoreRoot;
 import de.espirit.firstspirit.access.store.contentstore.ContentWorkflowable;
 import de.espirit.firstspirit.access.store.globalstore.GCAFolder;
 import de.espirit.firstspirit.access.store.globalstore.GCAPage;
@@ -53,16 +54,27 @@ import de.espirit.firstspirit.access.store.sitestore.SiteStoreFolder;
 import de.espirit.firstspirit.access.store.templatestore.Query;
 import de.espirit.firstspirit.access.store.templatestore.TemplateStoreElement;
 import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
-import de.espirit.firstspirit.agency.StoreAgent;
 import de.espirit.or.schema.Entity;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * This class provides methods to get the references of the workflow object and store them in the session.
@@ -101,7 +113,40 @@ class WorkflowObject {
 
     private boolean releaseRecursively = false;
 
-    private final Set<IDProvider> recursiveChildrenList = new HashSet<>();
+    /**
+     * The {@link ElementKey element keys} of the children of a recursive release.
+     */
+    private final LongHashSet recursiveChildKeys;
+
+    /**
+     * The parent chains of the walked elements.
+     */
+    private final AncestorIndex ancestorIndex;
+
+    /**
+     * The index used to find the Content2 objects of referenced entities.
+     */
+    private Content2Index content2Index;
+
+    /**
+     * The executor to check the rules for referenced elements with, null to check them one after another.
+     */
+    private ExecutorService ruleCheckExecutor;
+
+    /**
+     * The tracker that refreshes every checked element only once.
+     */
+    private RefreshTracker refreshTracker = new RefreshTracker();
+
+    /**
+     * The cache of outgoing references used by the broken reference check.
+     */
+    private OutgoingReferenceCache outgoingReferenceCache = new OutgoingReferenceCache();
+
+    /**
+     * The number of threads to walk the subtrees of a site store folder with in a recursive release.
+     */
+    private int discoveryParallelism = 1;
 
     /**
      * Constructor for WorkflowObject.
@@ -121,13 +166,9 @@ class WorkflowObject {
         }
 
         // get elements from recursive release
-        final Map<Long, Store.Type> childrenIdMap = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.WF_RECURSIVE_CHILDREN);
-        if(childrenIdMap != null && !childrenIdMap.isEmpty()) {
-            final StoreAgent storeAgent = workflowScriptContext.requireSpecialist(StoreAgent.TYPE);
-            for (final Map.Entry<Long, Store.Type> childrenId : childrenIdMap.entrySet()) {
-                recursiveChildrenList.add(storeAgent.getStore(childrenId.getValue()).getStoreElement(childrenId.getKey()));
-            }
-        }
+        final RecursiveChildren recursiveChildren = RecursiveChildren.readFromSession(workflowScriptContext);
+        ancestorIndex = new AncestorIndex((IDProvider) startElement, recursiveChildren);
+        recursiveChildKeys = recursiveChildren != null ? recursiveChildren.toKeySet() : new LongHashSet();
     }
 
 
@@ -139,52 +180,95 @@ class WorkflowObject {
      * @return a list of elements that reference the workflow object.
      */
     Set<Object> getRefObjectsFromStoreElement(final boolean releaseWithMedia, final boolean recursive) {
-        return getRefObjectsFromStoreElement(releaseWithMedia, recursive, storeElement);
+        if (recursive && discoveryParallelism > 1 && storeElement instanceof SiteStoreFolder) {
+            final ForkJoinPool forkJoinPool = new ForkJoinPool(discoveryParallelism);
+            try {
+                final Set<Long> visitedIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+                visitedIds.add(((IDProvider) storeElement).getId());
+                return ReferenceTargets.canonicalize(forkJoinPool.invoke(new SubtreeDiscovery(storeElement, releaseWithMedia, visitedIds)));
+            } finally {
+                forkJoinPool.shutdown();
+            }
+        }
+        final ReferenceTargets referenceTargets = new ReferenceTargets();
+        walkRefObjectsFromStoreElement(releaseWithMedia, recursive, new ReferenceListener() {
+            @Override
+            public void referenceFound(final Object reference) {
+                referenceTargets.add(reference);
+            }
+        });
+        return referenceTargets.getTargets();
     }
 
 
     /**
-     * This method gets the referenced objects from the workflow object (StoreElement) that prevent the release.
+     * This method walks the referenced objects from the workflow object (StoreElement) that prevent the release. In case of a recursive
+     * walk of a site store folder the folder tree is traversed with a work queue, every element is visited once. The references are passed
+     * to the listener as soon as the references of an element are collected, a reference may be reported more than once.
      *
      * @param releaseWithMedia Determines if media references should also be checked
-     * @return a list of elements that reference the workflow object.
+     * @param recursive        Determines if the children of a site store folder should be walked
+     * @param listener         the listener to pass the references to
      */
-    private Set<Object> getRefObjectsFromStoreElement(final boolean releaseWithMedia, final boolean recursive, StoreElement storeElement) {
-        Set<Object> referencedObjects = new HashSet<>();
+    void walkRefObjectsFromStoreElement(final boolean releaseWithMedia, final boolean recursive, final ReferenceListener listener) {
+        final Deque<StoreElement> queue = new ArrayDeque<>();
+        final LongHashSet visitedKeys = new LongHashSet();
+        final Set<Object> referencedObjects = new LinkedHashSet<>();
+        queue.add(storeElement);
+
+        while (!queue.isEmpty()) {
+            final StoreElement element = queue.poll();
+            if (element instanceof IDProvider && !visitedKeys.add(ElementKey.of((IDProvider) element))) {
+                continue;
+            }
+            referencedObjects.clear();
+            if (recursive && element instanceof SiteStoreFolder) {
+                for (IDProvider child : element.getChildren(IDProvider.class)) {
+                    queue.add(child);
+                }
+            } else {
+                addOwnReferences(releaseWithMedia, element, referencedObjects);
+            }
+            for (final Object referencedObject : referencedObjects) {
+                listener.referenceFound(referencedObject);
+            }
+        }
+    }
+
 
-        if (isPageRef(storeElement)) {
+    /**
+     * Adds the references of a single element, without walking the children of a site store folder.
+     *
+     * @param releaseWithMedia  Determines if media references should also be checked
+     * @param element           The element to add the references of
+     * @param referencedObjects The set to add the referenced objects to
+     */
+    private void addOwnReferences(final boolean releaseWithMedia, final StoreElement element, final Set<Object> referencedObjects) {
+        if (isPageRef(element)) {
             // add outgoing references
-            referencedObjects.addAll(getReferences(releaseWithMedia, storeElement));
+            addReferences(releaseWithMedia, element, referencedObjects);
 
             // add outgoing references of referenced page if it is not released
-            final Page page = ((PageRef) storeElement).getPage();
+            final Page page = ((PageRef) element).getPage();
 
             addOutgoingReferences(page, referencedObjects, releaseWithMedia);
-            final Set<Object> refObjectsFromSection = getRefObjectsFromSection(page, releaseWithMedia);
-            referencedObjects.addAll(refObjectsFromSection);
-
+            addRefObjectsFromSection(page, releaseWithMedia, referencedObjects);
 
-        } else if (recursive && storeElement instanceof SiteStoreFolder) {
-            for (IDProvider idProvider : storeElement.getChildren(IDProvider.class)) {
-                referencedObjects.addAll(getRefObjectsFromStoreElement(releaseWithMedia, true, idProvider));
-            }
         } else if (isValidStoreElement()) {
             // add outgoing references
-            referencedObjects.addAll(getReferences(releaseWithMedia, storeElement));
-            if (isPage(storeElement)) {
-                final Set<Object> refObjectsFromSection = getRefObjectsFromSection(storeElement, releaseWithMedia);
-                referencedObjects.addAll(refObjectsFromSection);
+            addReferences(releaseWithMedia, element, referencedObjects);
+            if (isPage(element)) {
+                addRefObjectsFromSection(element, releaseWithMedia, referencedObjects);
             }
-        } else if (storeElement instanceof Content2) {
+        } else if (element instanceof Content2) {
             //Element is a content2 object -> aborting"
             workflowScriptContext.gotoErrorState(bundle.getString("releaseC2notPossible"), new FsException());
 
-        } else if (storeElement instanceof ContentFolder) {
+        } else if (element instanceof ContentFolder) {
             //Element is a content folder object -> aborting"
             workflowScriptContext.gotoErrorState(bundle.getString("releaseCFnotPossible"), new FsException());
 
         }
-        return referencedObjects;
     }
 
 
@@ -196,25 +280,34 @@ class WorkflowObject {
     private void addOutgoingReferences(final ReferenceEntry[] entries, final Set<Object> referencedObjects, final boolean releaseWithMedia) {
         for (ReferenceEntry referenceEntry : entries) {
             boolean referencedElementIsNotSelf = referenceEntry.getReferencedElement() != storeElement;
-            boolean referencedElementIsNoTemplate = !(referenceEntry.getReferencedElement() instanceof TemplateStoreElement);
-            boolean referencedElementIsNoMedia = !referenceEntry.isType(ReferenceEntry.MEDIA_STORE_REFERENCE);
-            boolean releaseReferencedMedia = releaseWithMedia || referencedElementIsNoMedia;
-            if (referencedElementIsNoTemplate && releaseReferencedMedia && referencedElementIsNotSelf) {
+            if (isReleaseReference(referenceEntry, releaseWithMedia) && referencedElementIsNotSelf) {
                 referencedObjects.add(referenceEntry);
             }
         }
     }
 
     /**
-     * This method gets the referenced objects from sections of a page that prevent the release.
+     * Checks if the element of the given reference has to be released together with the referencing element.
      *
-     * @param page             The page where to check the sections
-     * @param releaseWithMedia Determines if media references should also be checked
-     * @return a list of elements that reference the workflow object.
+     * @param referenceEntry   the reference to check.
+     * @param releaseWithMedia Determines if media references should be included.
+     * @return true if the referenced element is no template and no media unless media is released as well.
      */
-    private Set<Object> getRefObjectsFromSection(final StoreElement page, final boolean releaseWithMedia) {
-        Set<Object> referencedObjects = new HashSet<>();
+    static boolean isReleaseReference(final ReferenceEntry referenceEntry, final boolean releaseWithMedia) {
+        boolean referencedElementIsNoTemplate = !(referenceEntry.getReferencedElement() instanceof TemplateStoreElement);
+        boolean referencedElementIsNoMedia = !referenceEntry.isType(ReferenceEntry.MEDIA_STORE_REFERENCE);
+        boolean releaseReferencedMedia = releaseWithMedia || referencedElementIsNoMedia;
+        return referencedElementIsNoTemplate && releaseReferencedMedia;
+    }
 
+    /**
+     * This method adds the referenced objects from sections of a page that prevent the release.
+     *
+     * @param page              The page where to check the sections
+     * @param releaseWithMedia  Determines if media references should also be checked
+     * @param referencedObjects The set to add the referenced objects to.
+     */
+    private void addRefObjectsFromSection(final StoreElement page, final boolean releaseWithMedia, final Set<Object> referencedObjects) {
         // add outgoing references of page sections
         for (Section<?> section : page.getChildren(Section.class, true)) {
 /** documentation example - begin. **/
@@ -223,7 +316,6 @@ class WorkflowObject {
                 addOutgoingReferences(section, referencedObjects, releaseWithMedia);
             }
         }
-        return referencedObjects;
     }
 
 
@@ -234,9 +326,20 @@ class WorkflowObject {
      * @return a list of elements that reference the workflow object.
      */
     Set<Object> getRefObjectsFromEntity(final boolean includeMedia) {
+        return getRefObjectsFromEntity(entity, includeMedia);
+    }
+
+    /**
+     * This method gets the referenced objects from the given Entity of the workflow's content2 object that prevent the release.
+     *
+     * @param releaseEntity the entity to get the references from.
+     * @param includeMedia  Determines if media references should also be checked
+     * @return a list of elements that reference the entity.
+     */
+    Set<Object> getRefObjectsFromEntity(final Entity releaseEntity, final boolean includeMedia) {
         Set<Object> referencedObjects = new HashSet<>();
-        addOutgoingReferences(content2.getSchema().getOutgoingReferences(entity), referencedObjects, includeMedia);
-        return referencedObjects;
+        addOutgoingReferences(content2.getSchema().getOutgoingReferences(releaseEntity), referencedObjects, includeMedia);
+        return ReferenceTargets.canonicalize(referencedObjects);
     }
 
     /**
@@ -255,8 +358,23 @@ class WorkflowObject {
         final ArrayList<IDProvider> releaseIdProviders = new ArrayList<>();
         final ArrayList<Entity> releaseEntities = new ArrayList<>();
 
+        // check every referenced element once, no matter how many references point to it
+        final ReferenceTargets referenceTargets = new ReferenceTargets();
+        referenceTargets.addAll(releaseObjects);
+        final Set<Object> targets = referenceTargets.getTargets();
+        if (Logging.isDebugEnabled(LOGGER)) {
+            Logging.logDebug("Checking " + targets.size() + " targets of " + referenceTargets.getUsageCount() + " references", LOGGER);
+            for (final Object target : targets) {
+                final List<Object> usages = referenceTargets.getUsages(target);
+                if (usages.size() > 1) {
+                    Logging.logDebug(usages.size() + " references to " + target, LOGGER);
+                }
+            }
+        }
+        final ReferenceTargets checkedElements = new ReferenceTargets();
+
         // iterate over references and get IDProvider and Entities to release
-        for (final Object object : releaseObjects) {
+        for (final Object object : targets) {
 
             if (isEntity(object) || (isReferenceEntry(object) && isEntity(getReferencedObjectFrom((ReferenceEntry) object)))) {
 
@@ -267,7 +385,9 @@ class WorkflowObject {
                 } else {
                     entityFromReference = (Entity) getReferencedObjectFrom((ReferenceEntry) object);
                 }
-                releaseEntities.add(entityFromReference);
+                if (checkedElements.add(entityFromReference)) {
+                    releaseEntities.add(entityFromReference);
+                }
             } else {
                 IDProvider idProvider;
                 if (isIdProvider(object)) {
@@ -281,7 +401,9 @@ class WorkflowObject {
                     idProvider = idProvider.getParent().getParent();
                 }
 /** documentation example - end. **/
-                releaseIdProviders.add(idProvider);
+                if (checkedElements.add(idProvider)) {
+                    releaseIdProviders.add(idProvider);
+                }
             }
             checkBrokenReferences(object, referenceResult);
         }
@@ -314,40 +436,20 @@ class WorkflowObject {
         return referenceResult;
     }
 
-    private void checkObjectInWorkflow(IDProvider idProvider, ReferenceResult referenceResult, Map<String, IDProvider.UidType> elementsInWorkflow) {
-        if (idProvider == null) {
-            throw new IllegalArgumentException("Object is null");
-        }
-        idProvider.refresh();
-
-        if(idProvider.hasTask()) {
-            Logging.logWarning("Element in workflow:" + idProvider.getUid(), LOGGER);
-            referenceResult.setNoObjectsInWorkflow(false);
-            recordIncorrectElement(elementsInWorkflow, idProvider);
-        }
-    }
-
-
     private void checkRulesForEnities(ArrayList<Entity> releaseEntities, ReferenceResult referenceResult,
                                       Map<String, IDProvider.UidType> notReleasedElements) {
         for(Entity entityFromReference : releaseEntities) {
-            Listable<Content2> suitableContent2Objects = getContent2ObjectsForEntity(entityFromReference);
+            boolean schemaIsReadonly = getContent2Index().isSchemaReadOnly(entityFromReference);
+            if (!schemaIsReadonly && !entityFromReference.isReleased()) {
+                Logging.logWarning(
+                        "No media and not released:" + entityFromReference.getIdentifier() + "#" + entityFromReference.get("fs_id"), LOGGER);
 
-            if (suitableContent2Objects.toList().isEmpty()) {
-                throw new IllegalStateException("No suitable content2 object found for referenced entity!");
-            } else {
-                boolean schemaIsReadonly = suitableContent2Objects.getFirst().getSchema().isReadOnly();
-                if (!schemaIsReadonly && !entityFromReference.isReleased()) {
-                    Logging.logWarning(
-                            "No media and not released:" + entityFromReference.getIdentifier() + "#" + entityFromReference.get("fs_id"), LOGGER);
-
-                    final String entityIdentifier = entityFromReference.getIdentifier().getEntityTypeName() + " ("
-                            + entityFromReference.getIdentifier().getEntityTypeName() + ", ID#" + entityFromReference.get("fs_id") + ")";
+                final String entityIdentifier = entityFromReference.getIdentifier().getEntityTypeName() + " ("
+                        + entityFromReference.getIdentifier().getEntityTypeName() + ", ID#" + entityFromReference.get("fs_id") + ")";
 
-                    referenceResult.setNotMediaReleased(false);
-                    referenceResult.setAllObjectsReleased(false);
-                    notReleasedElements.put(entityIdentifier, IDProvider.UidType.CONTENTSTORE_DATA);
-                }
+                referenceResult.setNotMediaReleased(false);
+                referenceResult.setAllObjectsReleased(false);
+                notReleasedElements.put(entityIdentifier, IDProvider.UidType.CONTENTSTORE_DATA);
             }
             referenceResult.setOnlyMedia(false);
         }
@@ -357,68 +459,119 @@ class WorkflowObject {
                                           ReferenceResult referenceResult,
                                           Map<String, IDProvider.UidType> notReleasedElements, boolean releaseWithMedia,
                                           Map<String, IDProvider.UidType> elementsInWorkflow) {
-        for(IDProvider idProvider : releaseIdProviders) {
-            // check if current PAGE within PAGEREF-Release
-            boolean isCurrentPage = false;
-            boolean isPartOfRelease = recursiveChildrenList.contains(idProvider) && releaseRecursively;
-            if (isPage(idProvider) && isPageRef(storeElement)) {
-                Page page = (Page) idProvider;
-                Page curPage = ((PageRef) storeElement).getPage();
-                if (page.getId() == curPage.getId()) {
-                    isCurrentPage = true;
-                }
+        final Language language = new FsLocale(workflowScriptContext).getLanguage();
+        final List<IdProviderCheck> checks;
+        if (ruleCheckExecutor != null && releaseIdProviders.size() > 1) {
+            checks = checkIdProvidersInParallel(releaseIdProviders, releaseWithMedia, language);
+        } else {
+            checks = new ArrayList<>(releaseIdProviders.size());
+            for (IDProvider idProvider : releaseIdProviders) {
+                checks.add(checkIdProvider(idProvider, releaseWithMedia, language));
             }
+        }
+        // merge in the order of the elements, so the result doesn't depend on the order the checks finished in
+        for (IdProviderCheck check : checks) {
+            check.mergeInto(referenceResult, notReleasedElements, elementsInWorkflow);
+        }
+    }
 
-            // if not current PAGE within PAGEREF-Release or media and release with media is not checked
-            if (idProvider != null && (!isCurrentPage || (isMedia(idProvider) && !releaseWithMedia))) {
-                idProvider.refresh();
-                // check if only media is referenced except templates
-                if (!isMedia(idProvider) && !isTemplate(idProvider) && !isDataRecord(idProvider)
-                    && !(isQuery(idProvider))) {
-                    Logging.logWarning("No media:" + idProvider.getId(), LOGGER);
-                    referenceResult.setOnlyMedia(false);
-                    // check if is no media and not released
-                    if (isNeverReleased(idProvider) && !isPartOfRelease) {
-                        Logging.logWarning("No media, but never released:" + idProvider.getId(), LOGGER);
-                        referenceResult.setNotMediaReleased(false);
-                        recordIncorrectElement(notReleasedElements, idProvider);
-                    }
-                }
-                // check if all references are released
-                boolean hasCorrectType = !isTemplate(idProvider) && !isDataRecord(idProvider) && !isQuery(idProvider);
-                boolean isReleasable = idProvider.isReleaseSupported() && isNeverReleased(idProvider);
-
-                if (hasCorrectType && isReleasable && !isPartOfRelease) {
-                    Logging.logWarning("Never released:" + idProvider.getId(), LOGGER);
-                    referenceResult.setAllObjectsReleased(false);
-                    recordIncorrectElement(notReleasedElements, idProvider);
+    private List<IdProviderCheck> checkIdProvidersInParallel(final List<IDProvider> releaseIdProviders, final boolean releaseWithMedia,
+                                                             final Language language) {
+        final List<Future<IdProviderCheck>> futures = new ArrayList<>(releaseIdProviders.size());
+        for (final IDProvider idProvider : releaseIdProviders) {
+            futures.add(ruleCheckExecutor.submit(new Callable<IdProviderCheck>() {
+                @Override
+                public IdProviderCheck call() {
+                    return checkIdProvider(idProvider, releaseWithMedia, language);
                 }
+            }));
+        }
+        final List<IdProviderCheck> checks = new ArrayList<>(futures.size());
+        try {
+            for (Future<IdProviderCheck> future : futures) {
+                checks.add(future.get());
             }
-            if(idProvider != null) {
-                checkObjectInWorkflow(idProvider, referenceResult, elementsInWorkflow);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rule check interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Rule check failed", e.getCause());
+        } finally {
+            for (Future<IdProviderCheck> future : futures) {
+                future.cancel(true);
             }
         }
+        return checks;
     }
 
+    /**
+     * Checks the rules for a single referenced element. Only local state is written, so the checks of several elements can run at once.
+     *
+     * @param idProvider       the element to check.
+     * @param releaseWithMedia Determines if media elements should be implicitly released.
+     * @param language         the language to record incorrect elements in.
+     * @return the outcome of the check.
+     */
+    private IdProviderCheck checkIdProvider(final IDProvider idProvider, final boolean releaseWithMedia, final Language language) {
+        final IdProviderCheck check = new IdProviderCheck();
+        if (idProvider == null) {
+            return check;
+        }
+        refreshTracker.refresh(idProvider);
+        // check if current PAGE within PAGEREF-Release
+        boolean isCurrentPage = false;
+        boolean isPartOfRelease = releaseRecursively && recursiveChildKeys.contains(ElementKey.of(idProvider));
+        if (isPage(idProvider) && isPageRef(storeElement)) {
+            Page page = (Page) idProvider;
+            Page curPage = ((PageRef) storeElement).getPage();
+            if (page.getId() == curPage.getId()) {
+                isCurrentPage = true;
+            }
+        }
 
-    private Listable<Content2> getContent2ObjectsForEntity(final Entity entityFromReference) {
-
-        StoreAgent storeAgent = workflowScriptContext.requireSpecialist(StoreAgent.TYPE);
-        ContentStoreRoot contentStoreRoot = (ContentStoreRoot) storeAgent.getStore(Store.Type.CONTENTSTORE);
-
-        return contentStoreRoot.getChildren(new TypedFilter<Content2>(Content2.class) {
-            @Override
-            public boolean accept(Content2 storeElement) {
-                return (storeElement.getEntityType().equals(entityFromReference.getEntityType())) && storeElement.getEntity(entityFromReference.getKeyValue()) != null;
+        // if not current PAGE within PAGEREF-Release or media and release with media is not checked
+        if (!isCurrentPage || (isMedia(idProvider) && !releaseWithMedia)) {
+            // check if only media is referenced except templates
+            if (!isMedia(idProvider) && !isTemplate(idProvider) && !isDataRecord(idProvider)
+                && !(isQuery(idProvider))) {
+                Logging.logWarning("No media:" + idProvider.getId(), LOGGER);
+                check.onlyMedia = false;
+                // check if is no media and not released
+                if (isNeverReleased(idProvider) && !isPartOfRelease) {
+                    Logging.logWarning("No media, but never released:" + idProvider.getId(), LOGGER);
+                    check.notMediaReleased = false;
+                    recordIncorrectElement(check.notReleasedElements, idProvider, language);
+                }
             }
-        }, true);
+            // check if all references are released
+            boolean hasCorrectType = !isTemplate(idProvider) && !isDataRecord(idProvider) && !isQuery(idProvider);
+            boolean isReleasable = idProvider.isReleaseSupported() && isNeverReleased(idProvider);
+
+            if (hasCorrectType && isReleasable && !isPartOfRelease) {
+                Logging.logWarning("Never released:" + idProvider.getId(), LOGGER);
+                check.allObjectsReleased = false;
+                recordIncorrectElement(check.notReleasedElements, idProvider, language);
+            }
+        }
+
+        // check if the element is in a workflow
+        if (idProvider.hasTask()) {
+            Logging.logWarning("Element in workflow:" + idProvider.getUid(), LOGGER);
+            check.noObjectsInWorkflow = false;
+            recordIncorrectElement(check.elementsInWorkflow, idProvider, language);
+        }
+        return check;
     }
 
+
     private static Object getReferencedObjectFrom(final ReferenceEntry object) {
         return object.getReferencedObject();
     }
 
-    private static void checkBrokenReferences(final Object object, final ReferenceResult referenceResult) {
+    private void checkBrokenReferences(final Object object, final ReferenceResult referenceResult) {
         if (object == null) {
             throw new IllegalArgumentException("Object is null");
         }
@@ -428,36 +581,32 @@ class WorkflowObject {
 
         if (isReferenceEntry(object)) {
             ReferenceEntry referenceEntry = (ReferenceEntry) object;
-            Logging.logInfo("Check broken reference for " + referenceEntry, LOGGER);
+            if (Logging.isDebugEnabled(LOGGER)) {
+                Logging.logDebug("Check broken reference for " + referenceEntry, LOGGER);
+            }
             if (referenceEntry.isBroken()) {
                 referenceResult.setNoBrokenReferences(false);
                 Logging.logInfo("Reference broken!", LOGGER);
-                ReferenceEntry[] usages = referenceEntry.getUsages();
-                Logging.logInfo("Current usages:", LOGGER);
-                for(ReferenceEntry usage : usages) {
-                    Logging.logInfo("Reference id: " + usage.getId(), LOGGER);
-                }
+                logUsages(referenceEntry);
             } else {
                 checkForBrokenRefsOnNonBrokenRefs(referenceResult, referenceEntry);
             }
         }
     }
 
-    private static void checkForBrokenRefsOnNonBrokenRefs(final ReferenceResult referenceResult, final ReferenceEntry referenceEntry) {
-        if (referenceEntry.getReferencedElement() != null) {
-            final ReferenceEntry[] outgoingReferences = referenceEntry.getReferencedElement().getOutgoingReferences();
-            for (ReferenceEntry reference : outgoingReferences) {
-                Logging.logInfo("Check broken reference for " + reference, LOGGER);
-                if (reference.isBroken()) {
-                    referenceResult.setNoBrokenReferences(false);
-                    Logging.logInfo("Reference broken!", LOGGER);
-                    ReferenceEntry[] usages = referenceEntry.getUsages();
-                    Logging.logInfo("Current usages:", LOGGER);
-                    for(ReferenceEntry usage : usages) {
-                        Logging.logInfo("Reference id: " + usage.getId(), LOGGER);
-                    }
-                }
-            }
+    private void checkForBrokenRefsOnNonBrokenRefs(final ReferenceResult referenceResult, final ReferenceEntry referenceEntry) {
+        final IDProvider referencedElement = referenceEntry.getReferencedElement();
+        if (referencedElement != null && outgoingReferenceCache.hasBrokenOutgoingReferences(referencedElement)) {
+            referenceResult.setNoBrokenReferences(false);
+            Logging.logInfo("Reference broken!", LOGGER);
+            logUsages(referenceEntry);
+        }
+    }
+
+    private static void logUsages(final ReferenceEntry referenceEntry) {
+        Logging.logInfo("Current usages:", LOGGER);
+        for (ReferenceEntry usage : referenceEntry.getUsages()) {
+            Logging.logInfo("Reference id: " + usage.getId(), LOGGER);
         }
     }
 
@@ -511,27 +660,26 @@ class WorkflowObject {
         return object instanceof Entity;
     }
 
-    private void recordIncorrectElement(final Map<String, IDProvider.UidType> elements, final IDProvider idProvider) {
+    private static void recordIncorrectElement(final Map<String, IDProvider.UidType> elements, final IDProvider idProvider,
+                                               final Language language) {
         if (elements == null) {
             throw new IllegalArgumentException("Map is null");
         }
         if (idProvider == null) {
             throw new IllegalArgumentException("IDProvider is null");
         }
-        elements.put(idProvider.getDisplayName(new FsLocale(workflowScriptContext).getLanguage()) + " (" + idProvider.getUid() + ", "
-                + idProvider.getId() + ")", idProvider.getUidType());
+        elements.put(idProvider.getDisplayName(language) + " (" + idProvider.getUid() + ", " + idProvider.getId() + ")", idProvider.getUidType());
 
     }
 
     /**
-     * Convenience method to get referenced objects of storeElement and its parents.
+     * Convenience method to add referenced objects of storeElement and its parents.
      *
      * @param releaseWithMedia Determines if media references should also be checked.
-     * @return the list of referenced objects.
+     * @param storeElement     The element to add the references of.
+     * @param references       The set to add the referenced objects to.
      */
-    private Set<Object> getReferences(final boolean releaseWithMedia, StoreElement storeElement) {
-        Set<Object> references = new HashSet<>();
-
+    private void addReferences(final boolean releaseWithMedia, final StoreElement storeElement, final Set<Object> references) {
         // add outgoing references
         addOutgoingReferences(storeElement, references, releaseWithMedia);
 
@@ -541,7 +689,16 @@ class WorkflowObject {
                 StoreElement elem = storeElement;
                 while (elem.getParent() != null) {
                     elem = elem.getParent();
-                    addOutgoingReferences(elem, references, releaseWithMedia);
+                    if (elem instanceof IDProvider) {
+                        // the references of a folder are shared by all of its never released children
+                        for (ReferenceEntry referenceEntry : outgoingReferenceCache.getReleaseReferences((IDProvider) elem, releaseWithMedia)) {
+                            if (referenceEntry.getReferencedElement() != storeElement) {
+                                references.add(referenceEntry);
+                            }
+                        }
+                    } else {
+                        addOutgoingReferences(elem, references, releaseWithMedia);
+                    }
                 }
             }
         }
@@ -551,8 +708,6 @@ class WorkflowObject {
             addParentFoldersInCaseOfMovedFolder(references);
             addParentFolderIfChanged(references);
         }
-
-        return references;
     }
 
 
@@ -589,14 +744,7 @@ class WorkflowObject {
 
 
     private boolean notInChildList() {
-        StoreElement elem = storeElement;
-        while (elem.getParent() != null) {
-            elem = elem.getParent();
-            if (elem.equals(startElement)) {
-                return false;
-            }
-        }
-        return true;
+        return startElement == null || !ancestorIndex.isDescendantOf((IDProvider) storeElement, (IDProvider) startElement);
     }
 
 
@@ -617,8 +765,142 @@ class WorkflowObject {
         storeElement = idProvider;
     }
 
+    /**
+     * Sets the workflow object back to the element the workflow was started on.
+     */
+    void resetStoreElement() {
+        storeElement = startElement;
+    }
+
 
     void setRecursively(boolean releaseRecursively) {
         this.releaseRecursively = releaseRecursively;
     }
+
+
+    /**
+     * Sets the tracker to refresh checked elements with, so elements checked by several workflow objects of a step are refreshed once.
+     *
+     * @param refreshTracker the tracker to use.
+     */
+    void setRefreshTracker(final RefreshTracker refreshTracker) {
+        this.refreshTracker = refreshTracker;
+    }
+
+    /**
+     * Sets the cache of outgoing references, so elements referenced from several workflow objects of a step are scanned once.
+     *
+     * @param outgoingReferenceCache the cache to use.
+     */
+    void setOutgoingReferenceCache(final OutgoingReferenceCache outgoingReferenceCache) {
+        this.outgoingReferenceCache = outgoingReferenceCache;
+    }
+
+    /**
+     * Sets the number of threads to walk the subtrees of a site store folder with in a recursive release. The subtrees are walked one
+     * after another if the parallelism is 1.
+     *
+     * @param discoveryParallelism the maximum number of threads.
+     */
+    void setDiscoveryParallelism(final int discoveryParallelism) {
+        this.discoveryParallelism = Math.max(1, discoveryParallelism);
+    }
+
+    /**
+     * Sets the executor to check the rules for referenced elements with. The executor is owned by the caller, which has to shut it down.
+     *
+     * @param ruleCheckExecutor the executor to use or null to check the elements one after another.
+     */
+    void setRuleCheckExecutor(final ExecutorService ruleCheckExecutor) {
+        this.ruleCheckExecutor = ruleCheckExecutor;
+    }
+
+    /**
+     * Sets the Content2 index to use, so that several workflow objects of one workflow run can share it.
+     *
+     * @param content2Index the index to use.
+     */
+    void setContent2Index(Content2Index content2Index) {
+        this.content2Index = content2Index;
+    }
+
+
+    private Content2Index getContent2Index() {
+        if (content2Index == null) {
+            content2Index = new Content2Index(workflowScriptContext);
+        }
+        return content2Index;
+    }
+
+
+    /**
+     * The outcome of the rule check of a single referenced element.
+     */
+    private static final class IdProviderCheck {
+
+        private boolean onlyMedia = true;
+        private boolean notMediaReleased = true;
+        private boolean allObjectsReleased = true;
+        private boolean noObjectsInWorkflow = true;
+        private final Map<String, IDProvider.UidType> notReleasedElements = new LinkedHashMap<>();
+        private final Map<String, IDProvider.UidType> elementsInWorkflow = new LinkedHashMap<>();
+
+        private void mergeInto(final ReferenceResult referenceResult, final Map<String, IDProvider.UidType> notReleasedElements,
+                               final Map<String, IDProvider.UidType> elementsInWorkflow) {
+            if (!onlyMedia) {
+                referenceResult.setOnlyMedia(false);
+            }
+            if (!notMediaReleased) {
+                referenceResult.setNotMediaReleased(false);
+            }
+            if (!allObjectsReleased) {
+                referenceResult.setAllObjectsReleased(false);
+            }
+            if (!noObjectsInWorkflow) {
+                referenceResult.setNoObjectsInWorkflow(false);
+            }
+            notReleasedElements.putAll(this.notReleasedElements);
+            elementsInWorkflow.putAll(this.elementsInWorkflow);
+        }
+    }
+
+
+    /**
+     * Collects the references of a site store subtree. The subtrees of the children of a folder are walked in parallel and their
+     * references merged.
+     */
+    private final class SubtreeDiscovery extends RecursiveTask<Set<Object>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final StoreElement element;
+        private final boolean releaseWithMedia;
+        private final Set<Long> visitedIds;
+
+        private SubtreeDiscovery(final StoreElement element, final boolean releaseWithMedia, final Set<Long> visitedIds) {
+            this.element = element;
+            this.releaseWithMedia = releaseWithMedia;
+            this.visitedIds = visitedIds;
+        }
+
+        @Override
+        protected Set<Object> compute() {
+            final Set<Object> referencedObjects = new LinkedHashSet<>();
+            if (element instanceof SiteStoreFolder) {
+                final List<SubtreeDiscovery> subtrees = new ArrayList<>();
+                for (IDProvider child : element.getChildren(IDProvider.class)) {
+                    if (visitedIds.add(child.getId())) {
+                        subtrees.add(new SubtreeDiscovery(child, releaseWithMedia, visitedIds));
+                    }
+                }
+                invokeAll(subtrees);
+                for (SubtreeDiscovery subtree : subtrees) {
+                    referencedObjects.addAll(subtree.join());
+                }
+            } else {
+                addOwnReferences(releaseWithMedia, element, referencedObjects);
+            }
+            return referencedObjects;
+        }
+    }
 }
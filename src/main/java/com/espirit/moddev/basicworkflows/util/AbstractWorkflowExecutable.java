@@ -30,11 +30,9 @@ import java.util.ResourceBundle;
 import de.espirit.firstspirit.access.ReferenceEntry;
 import de.espirit.firstspirit.access.script.Executable;
 import de.espirit.firstspirit.access.store.IDProvider;
-import de.espirit.firstspirit.access.store.Store;
 import de.espirit.firstspirit.access.store.contentstore.ContentWorkflowable;
 import de.espirit.firstspirit.access.store.sitestore.PageRef;
 import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
-import de.espirit.firstspirit.agency.StoreAgent;
 
 /**
  * Abstract WorkflowExecutable that contains the basic methods used in all executables.
@@ -63,7 +61,7 @@ public abstract class AbstractWorkflowExecutable implements Executable {
      * @param resultList The resulting list of objects to release
      */
     protected static void addReferencesExcludingPageRefsFromSession(final Collection<Object> objectsToAdd,
-                                                                    final List<String> objectsToExclude, final List<Object> resultList) {
+                                                                    final Collection<String> objectsToExclude, final List<Object> resultList) {
         for (final Object object : objectsToAdd) {
             if (object instanceof ReferenceEntry) {
                 final ReferenceEntry refEntry = (ReferenceEntry) object;
@@ -150,13 +148,10 @@ public abstract class AbstractWorkflowExecutable implements Executable {
 
 
 
-    protected List<IDProvider> loadChildrenList(final WorkflowScriptContext workflowScriptContext, final Map<Long, Store.Type> childrenIdMap) {
+    protected List<IDProvider> loadChildrenList(final WorkflowScriptContext workflowScriptContext, final RecursiveChildren recursiveChildren) {
         final List<IDProvider> childrenList = new ArrayList<>();
-        if (childrenIdMap != null) {
-            final StoreAgent storeAgent = workflowScriptContext.requireSpecialist(StoreAgent.TYPE);
-            for (final Map.Entry<Long, Store.Type> childrenId : childrenIdMap.entrySet()) {
-                childrenList.add(storeAgent.getStore(childrenId.getValue()).getStoreElement(childrenId.getKey()));
-            }
+        if (recursiveChildren != null) {
+            childrenList.addAll(recursiveChildren.resolve(workflowScriptContext));
         }
         return childrenList;
     }
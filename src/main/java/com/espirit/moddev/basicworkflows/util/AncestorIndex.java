@@ -0,0 +1,148 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the parent chains of elements. Every parent is resolved once, elements that share parents (e.g. the pages of a folder)
+ * reuse the chain of their common parent. Descendant queries for the start element of a recursive release are answered from the ids
+ * of its collected children first.
+ * <p>
+ * The index can be queried from several threads, e.g. by the workers of a parallel subtree discovery. Threads that miss the same chain
+ * at once both resolve it and store equal chains.
+ * <p>
+ * The index doesn't notice moved elements, so it should only live as long as the tree can be considered stable, e.g. for one workflow
+ * step.
+ */
+public class AncestorIndex {
+
+    private final ConcurrentMap<Long, List<IDProvider>> ancestorsByElement = new ConcurrentHashMap<>();
+
+    private final IDProvider root;
+    private final RecursiveChildren rootDescendants;
+
+    /**
+     * Constructor for an AncestorIndex without known descendants.
+     */
+    public AncestorIndex() {
+        this(null, null);
+    }
+
+    /**
+     * Constructor for AncestorIndex.
+     *
+     * @param root            the element whose descendants are known, may be null.
+     * @param rootDescendants the descendants of the root, may be null.
+     */
+    public AncestorIndex(final IDProvider root, final RecursiveChildren rootDescendants) {
+        this.root = root;
+        this.rootDescendants = rootDescendants;
+    }
+
+    /**
+     * Returns the ancestors of the given element, starting with its parent.
+     *
+     * @param element the element.
+     * @return the ancestors of the element.
+     */
+    public List<IDProvider> getAncestors(final IDProvider element) {
+        final List<IDProvider> cached = ancestorsByElement.get(ElementKey.of(element));
+        if (cached != null) {
+            return cached;
+        }
+
+        // walk up until an element with a known chain is found
+        final List<IDProvider> uncached = new ArrayList<>();
+        final LongHashSet walked = new LongHashSet();
+        List<IDProvider> ancestors = Collections.emptyList();
+        IDProvider current = element;
+        while (current != null) {
+            final long key = ElementKey.of(current);
+            final List<IDProvider> known = ancestorsByElement.get(key);
+            if (known != null) {
+                ancestors = known;
+                break;
+            }
+            if (!walked.add(key)) {
+                // an element that is its own ancestor ends the chain
+                break;
+            }
+            uncached.add(current);
+            current = current.getParent();
+        }
+
+        // build the chains top down, every chain is the parent followed by the chain of the parent
+        IDProvider parent = current;
+        for (int i = uncached.size() - 1; i >= 0; i--) {
+            if (parent != null) {
+                final List<IDProvider> chain = new ArrayList<>(ancestors.size() + 1);
+                chain.add(parent);
+                chain.addAll(ancestors);
+                ancestors = Collections.unmodifiableList(chain);
+            }
+            ancestorsByElement.put(ElementKey.of(uncached.get(i)), ancestors);
+            parent = uncached.get(i);
+        }
+        return ancestors;
+    }
+
+    /**
+     * Returns the depth of the given element below the root of its store.
+     *
+     * @param element the element.
+     * @return the number of ancestors of the element.
+     */
+    public int getDepth(final IDProvider element) {
+        return getAncestors(element).size();
+    }
+
+    /**
+     * Checks if the given element is a descendant of the given ancestor.
+     *
+     * @param element  the element.
+     * @param ancestor the possible ancestor.
+     * @return true if the ancestor is a parent, grandparent, ... of the element.
+     */
+    public boolean isDescendantOf(final IDProvider element, final IDProvider ancestor) {
+        final Store.Type storeType = element.getStore().getType();
+        if (storeType != ancestor.getStore().getType()) {
+            return false;
+        }
+        if (rootDescendants != null && root != null && root.getId() == ancestor.getId() && root.getStore().getType() == storeType
+            && rootDescendants.contains(storeType, element.getId())) {
+            return true;
+        }
+        // the known descendants are filtered by type, so other elements are checked by their parent chain
+        for (final IDProvider current : getAncestors(element)) {
+            if (current.getId() == ancestor.getId()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
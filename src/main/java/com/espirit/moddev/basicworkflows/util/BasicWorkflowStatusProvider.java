@@ -31,7 +31,6 @@ import de.espirit.firstspirit.workflow.WorkflowGroup;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ResourceBundle;
 
@@ -52,6 +51,15 @@ public class BasicWorkflowStatusProvider implements WebeditElementStatusProvider
 
     public static final Class<?> LOGGER = BasicWorkflowStatusProvider.class;
 
+    /**
+     * How long the parent chains are reused. The ContentCreator asks for the states of many elements of the same page at once, but
+     * elements may be moved while its session lasts.
+     */
+    private static final long ANCESTOR_INDEX_LIFETIME_MILLIS = 10000;
+
+    private AncestorIndex ancestorIndex;
+    private long ancestorIndexCreated;
+
     @Override
     public State getReleaseState(final IDProvider element) {
         State state;
@@ -136,20 +144,31 @@ public class BasicWorkflowStatusProvider implements WebeditElementStatusProvider
      * @param element the pageRef element
      * @return list of parent elements (folder)
      */
-    private static LinkedList<SiteStoreFolder> getParentFolders(IDProvider element) {
-        LinkedList<SiteStoreFolder> parentFolders = new LinkedList<>();
-
-        final IDProvider parentElement = element.getParent();
-        if (parentElement != null && !"root".equals(parentElement.getUid())) {
-            parentFolders = getParentFolders(parentElement);
+    private List<SiteStoreFolder> getParentFolders(IDProvider element) {
+        final List<SiteStoreFolder> parentFolders = new ArrayList<>();
+        for (final IDProvider parentElement : getAncestorIndex().getAncestors(element)) {
+            if (parentElement instanceof SiteStoreFolder) {
+                parentFolders.add((SiteStoreFolder) parentElement);
+            }
+            if ("root".equals(parentElement.getUid())) {
+                break;
+            }
         }
+        return parentFolders;
+    }
 
-        if (parentElement instanceof SiteStoreFolder) {
-            final SiteStoreFolder parentFolder = (SiteStoreFolder) parentElement;
-            parentFolders.addFirst(parentFolder);
+    /**
+     * Returns the index of parent chains shared by the calls of the last {@value #ANCESTOR_INDEX_LIFETIME_MILLIS} ms.
+     *
+     * @return the index.
+     */
+    private synchronized AncestorIndex getAncestorIndex() {
+        final long now = System.currentTimeMillis();
+        if (ancestorIndex == null || now - ancestorIndexCreated > ANCESTOR_INDEX_LIFETIME_MILLIS) {
+            ancestorIndex = new AncestorIndex();
+            ancestorIndexCreated = now;
         }
-
-        return parentFolders;
+        return ancestorIndex;
     }
 
     /**
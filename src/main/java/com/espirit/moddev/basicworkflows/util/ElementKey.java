@@ -0,0 +1,92 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+
+/**
+ * Packs the store type and the id of an element into one long, so elements can be told apart across stores without relying on the
+ * equality of FirstSpirit objects. The store type is kept in the upper {@value #STORE_BITS} bits, the id in the remaining bits.
+ */
+public final class ElementKey {
+
+    private static final int STORE_BITS = 8;
+    private static final int ID_BITS = Long.SIZE - STORE_BITS;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private ElementKey() {
+        // static helper
+    }
+
+    /**
+     * Returns the key of the given element. Elements without a store share the key space of an unknown store type.
+     *
+     * @param element the element.
+     * @return the key of the element.
+     */
+    public static long of(final IDProvider element) {
+        final Store store = element.getStore();
+        return of(store != null ? store.getType() : null, element.getId());
+    }
+
+    /**
+     * Returns the key of the element with the given store type and id.
+     *
+     * @param storeType the store type of the element, may be null.
+     * @param id        the id of the element.
+     * @return the key of the element.
+     */
+    public static long of(final Store.Type storeType, final long id) {
+        final long storeCode = storeType != null ? storeType.ordinal() + 1 : 0;
+        return storeCode << ID_BITS | id & ID_MASK;
+    }
+
+    /**
+     * Returns the store type encoded in the given key.
+     *
+     * @param key the key.
+     * @return the store type or null if the element had no store.
+     */
+    public static Store.Type getStoreType(final long key) {
+        final int storeCode = (int) (key >>> ID_BITS);
+        return storeCode == 0 ? null : Store.Type.values()[storeCode - 1];
+    }
+
+    /**
+     * Returns the id encoded in the given key.
+     *
+     * @param key the key.
+     * @return the id of the element.
+     */
+    public static long getId(final long key) {
+        return key & ID_MASK;
+    }
+
+    /**
+     * Returns a readable form of the given key for logging.
+     *
+     * @param key the key.
+     * @return the store type and id of the key.
+     */
+    public static String toString(final long key) {
+        return getStoreType(key) + "#" + getId(key);
+    }
+}
@@ -19,6 +19,7 @@
  */
 package com.espirit.moddev.basicworkflows.util;
 
+import de.espirit.common.base.Logging;
 import de.espirit.firstspirit.access.editor.CheckboxEditorValue;
 import de.espirit.firstspirit.access.editor.value.Option;
 import de.espirit.firstspirit.access.store.Data;
@@ -84,6 +85,25 @@ public class FormEvaluator {
         return checkboxValue;
     }
 
+    /**
+     * Method to determine the value of a numeric custom attribute of the current task.
+     *
+     * @param varname      The name of the attribute.
+     * @param defaultValue The value to use if the attribute is not set or no number.
+     * @return the value of the attribute.
+     */
+    public int getIntegerValue(String varname, int defaultValue) {
+        Object value = workflowScriptContext.getTask().getCustomAttributes().get(varname);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                Logging.logWarning("Invalid number for " + varname + ": " + value, e, getClass());
+            }
+        }
+        return defaultValue;
+    }
+
     private static boolean isReleaseMedia(Object relwMedia) {
         return WorkflowConstants.TRUE.equals(relwMedia);
     }
@@ -24,12 +24,8 @@ import de.espirit.firstspirit.access.store.IDProvider;
 import de.espirit.firstspirit.access.store.contentstore.Content2;
 import de.espirit.firstspirit.access.store.pagestore.Section;
 import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
-import de.espirit.firstspirit.agency.BrokerAgent;
 import de.espirit.firstspirit.agency.FormValidationReport;
-import de.espirit.firstspirit.agency.LanguageAgent;
 import de.espirit.firstspirit.agency.MultiFormValidationReport;
-import de.espirit.firstspirit.agency.SpecialistsBroker;
-import de.espirit.firstspirit.agency.ValidationAgent;
 import de.espirit.firstspirit.store.access.globalstore.ProjectPropertiesImpl;
 import de.espirit.or.schema.Entity;
 
@@ -53,6 +49,11 @@ public class FormValidator {
      */
     private WorkflowScriptContext workflowScriptContext;
 
+    /**
+     * The service to validate with, created on first use if not given.
+     */
+    private ValidationService validationService;
+
     /**
      * Constructor for FormValidator.
      *
@@ -62,6 +63,17 @@ public class FormValidator {
         this.workflowScriptContext = workflowScriptContext;
     }
 
+    /**
+     * Constructor for FormValidator with a shared validation service.
+     *
+     * @param workflowScriptContext The workflowScriptContext from the workflow.
+     * @param validationService     The service to validate with.
+     */
+    public FormValidator(WorkflowScriptContext workflowScriptContext, ValidationService validationService) {
+        this.workflowScriptContext = workflowScriptContext;
+        this.validationService = validationService;
+    }
+
     /**
      * Convenience method to check if validation of gui form (of an IDProvider) is successful.
      *
@@ -94,23 +106,16 @@ public class FormValidator {
      */
     private String isValid(@Nullable IDProvider idProvider, @Nullable Content2 content2, @Nullable Entity entity) {
         MultiFormValidationReport validationReportsRel;
-        SpecialistsBroker broker = workflowScriptContext.getUserService().getConnection().getBroker();
-        BrokerAgent brokerAgent = broker.requireSpecialist(BrokerAgent.TYPE);
-        SpecialistsBroker projectBroker = brokerAgent.getBrokerByProjectName(workflowScriptContext.getProject().getName());
-
-        LanguageAgent languageAgent = projectBroker.requireSpecialist(LanguageAgent.TYPE);
-        ValidationAgent validationAgent = projectBroker.requireSpecialist(ValidationAgent.TYPE);
+        ValidationService service = getValidationService();
         String element = "";
         String validationResult = null;
 
         if (entity != null && content2 != null) {
-            validationReportsRel =
-                validationAgent
-                    .validate(content2.getDataset(entity).getFormData(), languageAgent.getLanguages(), ValidationAgent.ValidationScope.RELEASE);
+            validationReportsRel = service.validate(content2.getDataset(entity).getFormData());
             // element uid for error msg
             element = "\nContent2: " + content2.getUid() + "\n";
         } else {
-            validationReportsRel = validationAgent.validate(idProvider, ValidationAgent.ValidationScope.RELEASE);
+            validationReportsRel = service.validate(idProvider);
             if (idProvider != null) {
                 if (idProvider instanceof Section) {
                     // section has no uid so show page instead
@@ -133,7 +138,7 @@ public class FormValidator {
                 Set<String> gadgets = metaProblems.getGadgets();
                 // meta input components
                 for (String gadget : gadgets) {
-                    Collection<String> messages = metaProblems.getMessages(gadget, workflowScriptContext.getProject().getMasterLanguage());
+                    Collection<String> messages = metaProblems.getMessages(gadget, service.getMasterLanguage());
                     for (String message : messages) {
                         errorMsg.append("  ").append(gadget).append(" (META) = ").append(message).append("\n");
                     }
@@ -158,4 +163,11 @@ public class FormValidator {
         return validationResult;
     }
 
+    private synchronized ValidationService getValidationService() {
+        if (validationService == null) {
+            validationService = new ValidationService(workflowScriptContext);
+        }
+        return validationService;
+    }
+
 }
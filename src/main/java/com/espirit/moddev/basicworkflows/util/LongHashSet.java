@@ -0,0 +1,175 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs, e.g. {@link ElementKey element keys}, that avoids boxing. The values are kept in one array with open
+ * addressing and linear probing. The set isn't thread-safe, but can be read by several threads once it is filled.
+ */
+public final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Marks empty slots, the value itself is tracked separately.
+     */
+    private static final long EMPTY = 0L;
+
+    private long[] values;
+    private int size;
+    private boolean containsEmpty;
+
+    /**
+     * Constructor for an empty LongHashSet.
+     */
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructor for a LongHashSet that can hold the expected number of values without growing.
+     *
+     * @param expectedSize the expected number of values.
+     */
+    public LongHashSet(final int expectedSize) {
+        values = new long[capacityFor(expectedSize)];
+    }
+
+    /**
+     * Adds the given value.
+     *
+     * @param value the value to add.
+     * @return true if the value wasn't contained before.
+     */
+    public boolean add(final long value) {
+        if (value == EMPTY) {
+            final boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+        int index = indexOf(values, value);
+        if (values[index] == value) {
+            return false;
+        }
+        if ((size + 1) * 2 > values.length) {
+            grow();
+            index = indexOf(values, value);
+        }
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Checks if the given value is contained.
+     *
+     * @param value the value.
+     * @return true if the value is contained.
+     */
+    public boolean contains(final long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+        return values[indexOf(values, value)] == value;
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the number of values.
+     */
+    public int size() {
+        return containsEmpty ? size + 1 : size;
+    }
+
+    /**
+     * Checks if there are no values.
+     *
+     * @return true if the set is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the values in no particular order.
+     *
+     * @return the values.
+     */
+    public long[] toArray() {
+        final long[] result = new long[size()];
+        int i = 0;
+        if (containsEmpty) {
+            result[i++] = EMPTY;
+        }
+        for (final long value : values) {
+            if (value != EMPTY) {
+                result[i++] = value;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final long[] sorted = toArray();
+        Arrays.sort(sorted);
+        return Arrays.toString(sorted);
+    }
+
+    private void grow() {
+        final long[] grown = new long[values.length * 2];
+        for (final long value : values) {
+            if (value != EMPTY) {
+                grown[indexOf(grown, value)] = value;
+            }
+        }
+        values = grown;
+    }
+
+    /**
+     * Returns the slot of the given value or the empty slot it belongs in.
+     */
+    private static int indexOf(final long[] table, final long value) {
+        final int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != EMPTY && table[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int mix(final long value) {
+        // spread the bits, element keys differ mostly in the lower bits of the id and the upper bits of the store type
+        long hash = value * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return (int) (hash ^ hash >>> 16);
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
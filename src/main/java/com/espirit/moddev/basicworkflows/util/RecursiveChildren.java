@@ -0,0 +1,250 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.common.base.Logging;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.firstspirit.agency.StoreAgent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The children of the start element of a recursive release as stored in the workflow session. The ids are kept as sorted primitive
+ * arrays per store type. The children are resolved on first access and kept for the rest of the workflow step.
+ */
+public final class RecursiveChildren implements Serializable {
+
+    private static final long serialVersionUID = -6526713468137425061L;
+
+    /**
+     * The logging class to use.
+     */
+    public static final Class<?> LOGGER = RecursiveChildren.class;
+
+    private final EnumMap<Store.Type, long[]> idsByStore;
+
+    /**
+     * The resolved children and the context of the step they were resolved in.
+     */
+    private transient List<IDProvider> children;
+    private transient WorkflowScriptContext resolvedIn;
+
+    private RecursiveChildren(final EnumMap<Store.Type, long[]> idsByStore) {
+        this.idsByStore = idsByStore;
+    }
+
+    /**
+     * Creates the children for the given elements.
+     *
+     * @param elements the children.
+     * @return the children.
+     */
+    public static RecursiveChildren of(final Iterable<? extends IDProvider> elements) {
+        final EnumMap<Store.Type, List<Long>> ids = new EnumMap<>(Store.Type.class);
+        for (final IDProvider element : elements) {
+            final Store.Type storeType = element.getStore().getType();
+            List<Long> storeIds = ids.get(storeType);
+            if (storeIds == null) {
+                storeIds = new ArrayList<>();
+                ids.put(storeType, storeIds);
+            }
+            storeIds.add(element.getId());
+        }
+        final EnumMap<Store.Type, long[]> idsByStore = new EnumMap<>(Store.Type.class);
+        for (final Map.Entry<Store.Type, List<Long>> storeIds : ids.entrySet()) {
+            final long[] sorted = new long[storeIds.getValue().size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = storeIds.getValue().get(i);
+            }
+            idsByStore.put(storeIds.getKey(), sortedUnique(sorted));
+        }
+        return new RecursiveChildren(idsByStore);
+    }
+
+    /**
+     * Creates the children from the map of ids to store types that was stored in the session by earlier versions.
+     *
+     * @param childrenIdMap the ids of the children with their store types.
+     * @return the children.
+     */
+    public static RecursiveChildren fromMap(final Map<Long, Store.Type> childrenIdMap) {
+        final EnumMap<Store.Type, long[]> idsByStore = new EnumMap<>(Store.Type.class);
+        final EnumMap<Store.Type, Integer> sizes = new EnumMap<>(Store.Type.class);
+        for (final Map.Entry<Long, Store.Type> childrenId : childrenIdMap.entrySet()) {
+            long[] storeIds = idsByStore.get(childrenId.getValue());
+            Integer size = sizes.get(childrenId.getValue());
+            if (storeIds == null) {
+                storeIds = new long[16];
+                size = 0;
+            } else if (size == storeIds.length) {
+                storeIds = Arrays.copyOf(storeIds, size * 2);
+            }
+            storeIds[size] = childrenId.getKey();
+            idsByStore.put(childrenId.getValue(), storeIds);
+            sizes.put(childrenId.getValue(), size + 1);
+        }
+        for (final Map.Entry<Store.Type, long[]> storeIds : idsByStore.entrySet()) {
+            storeIds.setValue(sortedUnique(Arrays.copyOf(storeIds.getValue(), sizes.get(storeIds.getKey()))));
+        }
+        return new RecursiveChildren(idsByStore);
+    }
+
+    /**
+     * Reads the children from {@link WorkflowConstants#WF_RECURSIVE_CHILDREN}. Id maps written by earlier versions are converted.
+     *
+     * @param workflowScriptContext the context to use.
+     * @return the children or null if there are none in the session.
+     */
+    public static RecursiveChildren readFromSession(final WorkflowScriptContext workflowScriptContext) {
+        final Object value = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, WorkflowConstants.WF_RECURSIVE_CHILDREN);
+        if (value instanceof RecursiveChildren) {
+            return (RecursiveChildren) value;
+        } else if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            final RecursiveChildren recursiveChildren = fromMap((Map<Long, Store.Type>) value);
+            workflowScriptContext.getSession().put(WorkflowConstants.WF_RECURSIVE_CHILDREN, recursiveChildren);
+            return recursiveChildren;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the element with the given store type and id is one of the children.
+     *
+     * @param storeType the store type of the element.
+     * @param id        the id of the element.
+     * @return true if the element is a child.
+     */
+    public boolean contains(final Store.Type storeType, final long id) {
+        final long[] storeIds = idsByStore.get(storeType);
+        return storeIds != null && Arrays.binarySearch(storeIds, id) >= 0;
+    }
+
+    /**
+     * Returns the {@link ElementKey element keys} of the children.
+     *
+     * @return a new set with the keys of the children.
+     */
+    public LongHashSet toKeySet() {
+        final LongHashSet keys = new LongHashSet(size());
+        for (final Map.Entry<Store.Type, long[]> storeIds : idsByStore.entrySet()) {
+            for (final long id : storeIds.getValue()) {
+                keys.add(ElementKey.of(storeIds.getKey(), id));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the children as the map of ids to store types that earlier versions stored in the session, for scripts that still expect
+     * this form.
+     *
+     * @return a new map with the ids of the children and their store types.
+     */
+    public Map<Long, Store.Type> toMap() {
+        final Map<Long, Store.Type> childrenIdMap = new HashMap<>(size() * 2);
+        for (final Map.Entry<Store.Type, long[]> storeIds : idsByStore.entrySet()) {
+            for (final long id : storeIds.getValue()) {
+                childrenIdMap.put(id, storeIds.getKey());
+            }
+        }
+        return childrenIdMap;
+    }
+
+    /**
+     * Returns the number of children.
+     *
+     * @return the number of children.
+     */
+    public int size() {
+        int size = 0;
+        for (final long[] storeIds : idsByStore.values()) {
+            size += storeIds.length;
+        }
+        return size;
+    }
+
+    /**
+     * Checks if there are no children.
+     *
+     * @return true if there are no children.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Resolves the children. They are loaded store by store, one by one as the store API offers no bulk load, and kept for the rest of the
+     * workflow step. Children that can't be found are skipped.
+     *
+     * @param workflowScriptContext the context of the current workflow step.
+     * @return the children.
+     */
+    public synchronized List<IDProvider> resolve(final WorkflowScriptContext workflowScriptContext) {
+        if (children == null || resolvedIn != workflowScriptContext) {
+            final StoreAgent storeAgent = workflowScriptContext.requireSpecialist(StoreAgent.TYPE);
+            final List<IDProvider> resolved = new ArrayList<>(size());
+            for (final Map.Entry<Store.Type, long[]> storeIds : idsByStore.entrySet()) {
+                final Store store = storeAgent.getStore(storeIds.getKey());
+                for (final long id : storeIds.getValue()) {
+                    final IDProvider child = store.getStoreElement(id);
+                    if (child != null) {
+                        resolved.add(child);
+                    } else {
+                        Logging.logWarning("Child with Id '" + id + "' not found in " + storeIds.getKey(), LOGGER);
+                    }
+                }
+                Logging.logDebug("Resolved " + storeIds.getValue().length + " children in " + storeIds.getKey(), LOGGER);
+            }
+            children = Collections.unmodifiableList(resolved);
+            resolvedIn = workflowScriptContext;
+        }
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder("RecursiveChildren{");
+        for (final Map.Entry<Store.Type, long[]> storeIds : idsByStore.entrySet()) {
+            result.append(storeIds.getKey()).append('=').append(Arrays.toString(storeIds.getValue())).append(' ');
+        }
+        return result.append('}').toString();
+    }
+
+    private static long[] sortedUnique(final long[] ids) {
+        Arrays.sort(ids);
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[size++] = ids[i];
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+}
@@ -0,0 +1,99 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.Language;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.firstspirit.agency.BrokerAgent;
+import de.espirit.firstspirit.agency.LanguageAgent;
+import de.espirit.firstspirit.agency.MultiFormValidationReport;
+import de.espirit.firstspirit.agency.SpecialistsBroker;
+import de.espirit.firstspirit.agency.ValidationAgent;
+import de.espirit.firstspirit.forms.FormData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Validates forms in the release scope. The project broker, the agents and the languages of the project are resolved once, so one
+ * service can be used for all validations of a workflow run.
+ */
+public class ValidationService {
+
+    private final ValidationAgent validationAgent;
+    private final List<Language> languages;
+    private final Language masterLanguage;
+
+    /**
+     * Constructor for ValidationService.
+     *
+     * @param workflowScriptContext The workflowScriptContext from the workflow.
+     */
+    public ValidationService(final WorkflowScriptContext workflowScriptContext) {
+        final SpecialistsBroker broker = workflowScriptContext.getUserService().getConnection().getBroker();
+        final BrokerAgent brokerAgent = broker.requireSpecialist(BrokerAgent.TYPE);
+        final SpecialistsBroker projectBroker = brokerAgent.getBrokerByProjectName(workflowScriptContext.getProject().getName());
+
+        final LanguageAgent languageAgent = projectBroker.requireSpecialist(LanguageAgent.TYPE);
+        validationAgent = projectBroker.requireSpecialist(ValidationAgent.TYPE);
+        languages = Collections.unmodifiableList(new ArrayList<>(languageAgent.getLanguages()));
+        masterLanguage = workflowScriptContext.getProject().getMasterLanguage();
+    }
+
+    /**
+     * Validates the form of the given element.
+     *
+     * @param idProvider the element to validate.
+     * @return the validation report.
+     */
+    public MultiFormValidationReport validate(final IDProvider idProvider) {
+        return validationAgent.validate(idProvider, ValidationAgent.ValidationScope.RELEASE);
+    }
+
+    /**
+     * Validates the given form data in all languages of the project.
+     *
+     * @param formData the form data to validate.
+     * @return the validation report.
+     */
+    public MultiFormValidationReport validate(final FormData formData) {
+        return validationAgent.validate(formData, languages, ValidationAgent.ValidationScope.RELEASE);
+    }
+
+    /**
+     * Returns the languages of the project.
+     *
+     * @return the languages.
+     */
+    public List<Language> getLanguages() {
+        return languages;
+    }
+
+    /**
+     * Returns the master language of the project, the messages of meta data problems are rendered in it.
+     *
+     * @return the master language.
+     */
+    public Language getMasterLanguage() {
+        return masterLanguage;
+    }
+}
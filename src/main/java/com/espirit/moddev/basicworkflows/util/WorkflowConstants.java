@@ -90,6 +90,11 @@ public interface WorkflowConstants {
 
     String IMAGE_FOLDER_HAS_REFERENCES = "wfImageFolderHasReferences";
 
+    /**
+     * Key that identifies the children of the start element of a recursive release. The value is a {@link RecursiveChildren}, earlier
+     * versions stored a {@code HashMap<Long, Store.Type>} of ids to store types. Scripts that read the key get the old form with
+     * {@link RecursiveChildren#toMap()}, old maps in the session are converted by {@link RecursiveChildren#readFromSession}.
+     */
     String WF_RECURSIVE_CHILDREN = "wfRecursiveChildren";
 
     String MEDIA_FORM_REFNAME = "wf_releasewmedia";
@@ -97,4 +102,54 @@ public interface WorkflowConstants {
     String RECURSIVE_FORM_REFNAME = "wf_releaseRecursively";
 
     String WF_OBJECTS_IN_WORKFLOW = "wfObjectsInWorkflow";
+
+    /**
+     * Key that identifies the release plan computed by the find related objects step.
+     */
+    String WF_RELEASE_PLAN = "wfReleasePlan";
+
+    /**
+     * Key that identifies the validation verdicts shared by the test release and the release step.
+     */
+    String WF_VALIDATION_CACHE = "wfValidationCache";
+
+    /**
+     * Key that identifies the key values of further datasets of the workflow's table that are released together with the workflow dataset.
+     */
+    String WF_RELEASE_ENTITY_KEYS = "wfReleaseEntityKeys";
+
+    /**
+     * Custom task attribute that sets the number of release server actions running at once, elements are released one after another if
+     * not set.
+     */
+    String WF_MAX_RELEASES_IN_FLIGHT = "wfMaxReleasesInFlight";
+
+    /**
+     * Custom task attribute that sets the number of threads to check the rules for referenced elements with, checks run one after
+     * another if not set.
+     */
+    String WF_RULE_CHECK_THREADS = "wfRuleCheckThreads";
+
+    /**
+     * Custom task attribute that sets the number of threads to walk the subtrees of a site store folder with in a recursive release,
+     * subtrees are walked one after another if not set.
+     */
+    String WF_DISCOVERY_PARALLELISM = "wfDiscoveryParallelism";
+
+    /**
+     * Custom task attribute that sets the number of threads to validate the released elements and their sections with, they are
+     * validated one after another if not set.
+     */
+    String WF_VALIDATION_THREADS = "wfValidationThreads";
+
+    /**
+     * Custom task attribute that sets the number of elements per chunk of a recursive release. Every completed chunk is checkpointed, so a
+     * retried release resumes after it. The start folder is released recursively in one server action if not set.
+     */
+    String WF_RELEASE_CHUNK_SIZE = "wfReleaseChunkSize";
+
+    /**
+     * Key that identifies the elements of a chunked recursive release that have been released already.
+     */
+    String WF_RELEASE_CHECKPOINT = "wfReleaseCheckpoint";
 }
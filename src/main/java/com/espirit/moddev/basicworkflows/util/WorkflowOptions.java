@@ -0,0 +1,211 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The options of a workflow step, read once from the form data, the custom attributes of the task and the session. Classes that need
+ * the options in per-element loops get the snapshot passed in instead of reading the values again.
+ */
+public final class WorkflowOptions {
+
+    private final boolean releaseWithMedia;
+    private final boolean releaseRecursively;
+    private final boolean suppressDialog;
+    private final boolean notFailed;
+    private final boolean notFailedTest;
+    private final List<String> releasePageRefUids;
+    private final List<String> relatedPageRefUids;
+    private final int maxReleasesInFlight;
+    private final int ruleCheckThreads;
+    private final int discoveryParallelism;
+    private final int validationThreads;
+    private final int releaseChunkSize;
+
+    private WorkflowOptions(final WorkflowScriptContext workflowScriptContext) {
+        final FormEvaluator formEvaluator = new FormEvaluator(workflowScriptContext);
+        releaseWithMedia = formEvaluator.getCheckboxValue(WorkflowConstants.MEDIA_FORM_REFNAME);
+        releaseRecursively = formEvaluator.getCheckboxValue(WorkflowConstants.RECURSIVE_FORM_REFNAME);
+        maxReleasesInFlight = formEvaluator.getIntegerValue(WorkflowConstants.WF_MAX_RELEASES_IN_FLIGHT, 1);
+        ruleCheckThreads = formEvaluator.getIntegerValue(WorkflowConstants.WF_RULE_CHECK_THREADS, 1);
+        discoveryParallelism = formEvaluator.getIntegerValue(WorkflowConstants.WF_DISCOVERY_PARALLELISM, 1);
+        validationThreads = formEvaluator.getIntegerValue(WorkflowConstants.WF_VALIDATION_THREADS, 1);
+        releaseChunkSize = formEvaluator.getIntegerValue(WorkflowConstants.WF_RELEASE_CHUNK_SIZE, 0);
+
+        final Object suppressDialogValue = workflowScriptContext.getSession().get(WorkflowConstants.WF_SUPPRESS_DIALOG);
+        suppressDialog = WorkflowConstants.TRUE.equals(suppressDialogValue);
+        notFailed = isNotSet(workflowScriptContext, "wfDoFail");
+        notFailedTest = isNotSet(workflowScriptContext, "wfDoTestFail");
+        releasePageRefUids = readUids(workflowScriptContext, WorkflowConstants.RELEASE_PAGEREF_ELEMENTS);
+        relatedPageRefUids = readUids(workflowScriptContext, WorkflowConstants.RELATED_PAGEREF_ELEMENTS);
+    }
+
+    /**
+     * Reads the options of the current workflow step.
+     *
+     * @param workflowScriptContext the context of the workflow step.
+     * @return the options.
+     */
+    public static WorkflowOptions read(final WorkflowScriptContext workflowScriptContext) {
+        return new WorkflowOptions(workflowScriptContext);
+    }
+
+    /**
+     * Checks if referenced media should be released, too.
+     *
+     * @return true if the media checkbox is checked.
+     */
+    public boolean isReleaseWithMedia() {
+        return releaseWithMedia;
+    }
+
+    /**
+     * Checks if the children of the workflow element should be released, too.
+     *
+     * @return true if the recursive checkbox is checked.
+     */
+    public boolean isReleaseRecursively() {
+        return releaseRecursively;
+    }
+
+    /**
+     * Checks if dialogs are suppressed, which is set in integration tests.
+     *
+     * @return true if no dialogs should be shown.
+     */
+    public boolean isSuppressDialog() {
+        return suppressDialog;
+    }
+
+    /**
+     * Checks if the release should be done, i.e. the test attribute wfDoFail isn't set.
+     *
+     * @return true if the release should be done.
+     */
+    public boolean isNotFailed() {
+        return notFailed;
+    }
+
+    /**
+     * Checks if the test release should be done, i.e. the test attribute wfDoTestFail isn't set.
+     *
+     * @return true if the test release should be done.
+     */
+    public boolean isNotFailedTest() {
+        return notFailedTest;
+    }
+
+    /**
+     * Returns the uids of the pagerefs to release instead of the workflow element, see
+     * {@link WorkflowConstants#RELEASE_PAGEREF_ELEMENTS}.
+     *
+     * @return the uids, empty if there are none.
+     */
+    public List<String> getReleasePageRefUids() {
+        return releasePageRefUids;
+    }
+
+    /**
+     * Returns the uids of the pagerefs to check instead of the workflow element, see
+     * {@link WorkflowConstants#RELATED_PAGEREF_ELEMENTS}.
+     *
+     * @return the uids, empty if there are none.
+     */
+    public List<String> getRelatedPageRefUids() {
+        return relatedPageRefUids;
+    }
+
+    /**
+     * Returns the maximum number of release server actions that may run at once, see
+     * {@link WorkflowConstants#WF_MAX_RELEASES_IN_FLIGHT}.
+     *
+     * @return the maximum number of release server actions.
+     */
+    public int getMaxReleasesInFlight() {
+        return maxReleasesInFlight;
+    }
+
+    /**
+     * Returns the number of threads to check the rules of referenced elements with, see
+     * {@link WorkflowConstants#WF_RULE_CHECK_THREADS}.
+     *
+     * @return the number of threads.
+     */
+    public int getRuleCheckThreads() {
+        return ruleCheckThreads;
+    }
+
+    /**
+     * Returns the number of threads to walk the subtrees of a site store folder with, see
+     * {@link WorkflowConstants#WF_DISCOVERY_PARALLELISM}.
+     *
+     * @return the number of threads.
+     */
+    public int getDiscoveryParallelism() {
+        return discoveryParallelism;
+    }
+
+    /**
+     * Returns the number of threads to validate the released elements with, see {@link WorkflowConstants#WF_VALIDATION_THREADS}.
+     *
+     * @return the number of threads.
+     */
+    public int getValidationThreads() {
+        return validationThreads;
+    }
+
+    /**
+     * Returns the number of elements per chunk of a recursive release, see {@link WorkflowConstants#WF_RELEASE_CHUNK_SIZE}.
+     *
+     * @return the chunk size, 0 or less if recursive releases are not chunked.
+     */
+    public int getReleaseChunkSize() {
+        return releaseChunkSize;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkflowOptions{releaseWithMedia=" + releaseWithMedia + ", releaseRecursively=" + releaseRecursively + ", suppressDialog="
+               + suppressDialog + ", notFailed=" + notFailed + ", notFailedTest=" + notFailedTest + ", releasePageRefUids="
+               + releasePageRefUids + ", relatedPageRefUids=" + relatedPageRefUids + '}';
+    }
+
+    private static boolean isNotSet(final WorkflowScriptContext workflowScriptContext, final String attribute) {
+        final Object value = workflowScriptContext.getTask().getCustomAttributes().get(attribute);
+        return value == null || WorkflowConstants.FALSE.equals(value);
+    }
+
+    private static List<String> readUids(final WorkflowScriptContext workflowScriptContext, final String key) {
+        final Object uids = WorkflowSessionHelper.readObjectFromSession(workflowScriptContext, key);
+        if (uids instanceof List) {
+            final List<String> result = new ArrayList<>();
+            for (final Object uid : (List<?>) uids) {
+                result.add((String) uid);
+            }
+            return Collections.unmodifiableList(result);
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,101 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+import de.espirit.firstspirit.access.store.pagestore.PageFolder;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReleaseCheckpointTest {
+
+    private WorkflowScriptContext context;
+    private Map<Object, Object> session;
+    private PageFolder folder;
+    private Page page;
+
+    @Before
+    public void setUp() throws Exception {
+        context = mock(WorkflowScriptContext.class);
+        session = new HashMap<>();
+        when(context.getSession()).thenReturn(session);
+        final Store store = mock(Store.class);
+        when(store.getType()).thenReturn(Store.Type.PAGESTORE);
+        folder = mock(PageFolder.class);
+        when(folder.getStore()).thenReturn(store);
+        when(folder.getId()).thenReturn(1L);
+        page = mock(Page.class);
+        when(page.getStore()).thenReturn(store);
+        when(page.getId()).thenReturn(2L);
+        when(page.getReleaseStatus()).thenReturn(IDProvider.RELEASED);
+    }
+
+    @Test
+    public void testOnlyCompletedChunksAreCheckpointed() throws Exception {
+        final ReleaseCheckpoint releaseCheckpoint = ReleaseCheckpoint.readFromSession(context, folder);
+        releaseCheckpoint.releaseFinished(page, null, true);
+
+        assertThat(releaseCheckpoint.isReleased(page), is(false));
+
+        releaseCheckpoint.completeChunk(context);
+
+        assertThat(releaseCheckpoint.isReleased(page), is(true));
+        assertThat(ReleaseCheckpoint.readFromSession(context, folder), is(sameInstance(releaseCheckpoint)));
+    }
+
+    @Test
+    public void testFailedAndChangedElementsAreReleasedAgain() throws Exception {
+        final ReleaseCheckpoint releaseCheckpoint = ReleaseCheckpoint.readFromSession(context, folder);
+        releaseCheckpoint.releaseFinished(folder, null, false);
+        releaseCheckpoint.releaseFinished(page, null, true);
+        releaseCheckpoint.completeChunk(context);
+
+        when(page.getReleaseStatus()).thenReturn(IDProvider.CHANGED);
+
+        assertThat(releaseCheckpoint.isReleased(folder), is(false));
+        assertThat(releaseCheckpoint.isReleased(page), is(false));
+    }
+
+    @Test
+    public void testCheckpointOfOtherStartElementIsReplaced() throws Exception {
+        final ReleaseCheckpoint releaseCheckpoint = ReleaseCheckpoint.readFromSession(context, folder);
+
+        final ReleaseCheckpoint otherCheckpoint = ReleaseCheckpoint.readFromSession(context, page);
+
+        assertThat(otherCheckpoint, is(not(sameInstance(releaseCheckpoint))));
+        assertThat(session.get(WorkflowConstants.WF_RELEASE_CHECKPOINT), is((Object) otherCheckpoint));
+    }
+}
@@ -0,0 +1,94 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import de.espirit.firstspirit.access.store.ReleaseProgress;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReleaseMetricsTest {
+
+    private Page page;
+
+    @Before
+    public void setUp() throws Exception {
+        page = mock(Page.class);
+        final Store store = mock(Store.class);
+        when(store.getType()).thenReturn(Store.Type.PAGESTORE);
+        when(page.getStore()).thenReturn(store);
+        when(page.getId()).thenReturn(42L);
+    }
+
+    @Test
+    public void testRunningReleaseIsReplacedByFinishedRelease() throws Exception {
+        final ReleaseMetrics releaseMetrics = new ReleaseMetrics();
+
+        releaseMetrics.releaseRunning(page, progress(new Long[]{1L, 2L}, new Long[0], new Long[0]));
+        assertThat(releaseMetrics.getReleasedCount(), is(2));
+
+        releaseMetrics.releaseFinished(page, progress(new Long[]{1L, 2L, 3L}, new Long[]{4L}, new Long[]{5L, 6L}), false);
+        assertThat(releaseMetrics.getReleasedCount(), is(3));
+        assertThat(releaseMetrics.getLockFailedCount(), is(1));
+        assertThat(releaseMetrics.getMissingPermissionCount(), is(2));
+        assertThat(releaseMetrics.getFinishedReleases(), is(1));
+        assertThat(releaseMetrics.getFailedReleases(), is(1));
+    }
+
+    @Test
+    public void testRunningProgressWithoutIdsKeepsCount() throws Exception {
+        final ReleaseMetrics releaseMetrics = new ReleaseMetrics();
+        releaseMetrics.releaseRunning(page, progress(new Long[]{1L}, new Long[0], new Long[0]));
+
+        releaseMetrics.releaseRunning(page, mock(ReleaseProgress.class));
+
+        assertThat(releaseMetrics.getReleasedCount(), is(1));
+    }
+
+    @Test
+    public void testReleaseWithoutProgress() throws Exception {
+        final ReleaseMetrics releaseMetrics = new ReleaseMetrics();
+
+        releaseMetrics.releaseFinished(page, null, false);
+
+        assertThat(releaseMetrics.getReleasedCount(), is(0));
+        assertThat(releaseMetrics.getFailedReleases(), is(1));
+    }
+
+    private static ReleaseProgress progress(final Long[] released, final Long[] lockFailed, final Long[] missingPermission) {
+        final ReleaseProgress progress = mock(ReleaseProgress.class);
+        when(progress.getReleasedElements()).thenReturn(new HashSet<>(Arrays.asList(released)));
+        when(progress.getLockFailedElements()).thenReturn(new HashSet<>(Arrays.asList(lockFailed)));
+        when(progress.getMissingPermissionElements()).thenReturn(new HashSet<>(Arrays.asList(missingPermission)));
+        when(progress.getDeletedElements()).thenReturn(Collections.<Long>emptySet());
+        return progress;
+    }
+}
@@ -0,0 +1,114 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.FormValidator;
+
+import de.espirit.common.util.Listable;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.contentstore.Content2;
+import de.espirit.firstspirit.access.store.mediastore.Media;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+import de.espirit.firstspirit.access.store.pagestore.Section;
+import de.espirit.or.schema.Entity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReleaseValidationTest {
+
+    private FormValidator formValidator;
+    private Page page;
+    private Media media;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        formValidator = mock(FormValidator.class);
+        page = mock(Page.class);
+        media = mock(Media.class);
+        final Section<?> section1 = mock(Section.class);
+        final Section<?> section2 = mock(Section.class);
+        final Listable<Section> sections = mock(Listable.class);
+        when(sections.iterator()).thenReturn(Arrays.<Section>asList(section1, section2).iterator());
+        when(page.getChildren(Section.class, true)).thenReturn(sections);
+
+        // the page takes longest, so its errors are known last
+        when(formValidator.isValid(page)).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) throws Exception {
+                Thread.sleep(100);
+                return "page";
+            }
+        });
+        when(formValidator.isValid(section1)).thenReturn(null);
+        when(formValidator.isValid(section2)).thenReturn("section2");
+        when(formValidator.isValid(media)).thenReturn("media");
+    }
+
+    @Test
+    public void testErrorsInElementOrder() throws Exception {
+        final List<List<String>> errors = new ReleaseValidation(formValidator, 1).validate(Arrays.<IDProvider>asList(page, media));
+
+        assertThat(errors, hasSize(2));
+        assertThat(errors.get(0), contains("page", "section2"));
+        assertThat(errors.get(1), contains("media"));
+    }
+
+    @Test
+    public void testParallelErrorsInElementOrder() throws Exception {
+        final List<List<String>> errors = new ReleaseValidation(formValidator, 4).validate(Arrays.<IDProvider>asList(page, media));
+
+        assertThat(errors, hasSize(2));
+        assertThat(errors.get(0), contains("page", "section2"));
+        assertThat(errors.get(1), contains("media"));
+    }
+
+    @Test
+    public void testNoElements() throws Exception {
+        assertThat(new ReleaseValidation(formValidator, 4).validate(Collections.<IDProvider>emptyList()), empty());
+    }
+
+    @Test
+    public void testEntityErrorsInEntityOrder() throws Exception {
+        final Content2 content2 = mock(Content2.class);
+        final Entity valid = mock(Entity.class);
+        final Entity invalid = mock(Entity.class);
+        when(formValidator.isValid(content2, valid)).thenReturn(null);
+        when(formValidator.isValid(content2, invalid)).thenReturn("invalid");
+
+        final List<String> errors = new ReleaseValidation(formValidator, 4).validateEntities(content2, Arrays.asList(invalid, valid));
+
+        assertThat(errors, contains("invalid", null));
+    }
+}
@@ -0,0 +1,119 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.mediastore.Media;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+import de.espirit.firstspirit.access.store.pagestore.PageFolder;
+import de.espirit.firstspirit.access.store.sitestore.PageRef;
+import de.espirit.firstspirit.access.store.sitestore.PageRefFolder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReleaseWavesTest {
+
+    @Test
+    public void testDependenciesAreReleasedFirst() throws Exception {
+        final PageFolder pageFolder = createElement(PageFolder.class, Store.Type.PAGESTORE, 1);
+        final Media media = createElement(Media.class, Store.Type.MEDIASTORE, 2);
+        final Page page = createElement(Page.class, Store.Type.PAGESTORE, 3);
+        final PageRef pageRef = createElement(PageRef.class, Store.Type.SITESTORE, 4);
+        when(page.getParent()).thenReturn(pageFolder);
+        when(pageRef.getPage()).thenReturn(page);
+
+        final List<List<IDProvider>> waves = ReleaseWaves.build(Arrays.<IDProvider>asList(pageRef, page, media, pageFolder));
+
+        assertThat(waves, hasSize(3));
+        assertThat(waves.get(0), contains((IDProvider) pageFolder, media));
+        assertThat(waves.get(1), contains((IDProvider) page));
+        assertThat(waves.get(2), contains((IDProvider) pageRef));
+    }
+
+    @Test
+    public void testIndependentElementsAreOrderedByStoreAndId() throws Exception {
+        final Media media = createElement(Media.class, Store.Type.MEDIASTORE, 3);
+        final Page page2 = createElement(Page.class, Store.Type.PAGESTORE, 2);
+        final Page page1 = createElement(Page.class, Store.Type.PAGESTORE, 1);
+
+        final List<List<IDProvider>> waves = ReleaseWaves.build(Arrays.<IDProvider>asList(media, page2, page1));
+
+        assertThat(waves, hasSize(1));
+        assertThat(waves.get(0), contains((IDProvider) page1, page2, media));
+    }
+
+    @Test
+    public void testSiteStoreIsReleasedAfterAllPageStoreElements() throws Exception {
+        final PageFolder pageFolder = createElement(PageFolder.class, Store.Type.PAGESTORE, 1);
+        final Page page = createElement(Page.class, Store.Type.PAGESTORE, 2);
+        final PageRefFolder pageRefFolder = createElement(PageRefFolder.class, Store.Type.SITESTORE, 3);
+        final Media media = createElement(Media.class, Store.Type.MEDIASTORE, 4);
+        when(page.getParent()).thenReturn(pageFolder);
+
+        final List<List<IDProvider>> waves = ReleaseWaves.build(Arrays.<IDProvider>asList(pageRefFolder, page, pageFolder, media));
+
+        assertThat(waves, hasSize(3));
+        assertThat(waves.get(0), contains((IDProvider) pageFolder, media));
+        assertThat(waves.get(1), contains((IDProvider) page));
+        assertThat(waves.get(2), contains((IDProvider) pageRefFolder));
+    }
+
+    @Test
+    public void testCyclicDependenciesAreReleasedLast() throws Exception {
+        final PageFolder pageFolder = createElement(PageFolder.class, Store.Type.PAGESTORE, 1);
+        final PageFolder subFolder = createElement(PageFolder.class, Store.Type.PAGESTORE, 2);
+        final Media media = createElement(Media.class, Store.Type.MEDIASTORE, 3);
+        when(pageFolder.getParent()).thenReturn(subFolder);
+        when(subFolder.getParent()).thenReturn(pageFolder);
+
+        final List<List<IDProvider>> waves = ReleaseWaves.build(Arrays.<IDProvider>asList(pageFolder, subFolder, media));
+
+        assertThat(waves, hasSize(2));
+        assertThat(waves.get(0), contains((IDProvider) media));
+        assertThat(waves.get(1), containsInAnyOrder((IDProvider) pageFolder, subFolder));
+    }
+
+    @Test
+    public void testNoElements() throws Exception {
+        assertThat(ReleaseWaves.build(Collections.<IDProvider>emptyList()), hasSize(0));
+    }
+
+
+    private static <T extends IDProvider> T createElement(final Class<T> type, final Store.Type storeType, final long id) {
+        final T element = mock(type);
+        final Store store = mock(Store.class);
+        when(store.getType()).thenReturn(storeType);
+        when(element.getStore()).thenReturn(store);
+        when(element.getId()).thenReturn(id);
+        return element;
+    }
+}
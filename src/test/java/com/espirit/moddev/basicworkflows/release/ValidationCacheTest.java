@@ -0,0 +1,91 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.FormValidator;
+
+import de.espirit.firstspirit.access.Revision;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ValidationCacheTest {
+
+    private FormValidator formValidator;
+    private Page page;
+    private Revision revision;
+
+    @Before
+    public void setUp() throws Exception {
+        formValidator = mock(FormValidator.class);
+        page = mock(Page.class);
+        revision = mock(Revision.class);
+        final Store store = mock(Store.class);
+        when(store.getType()).thenReturn(Store.Type.PAGESTORE);
+        when(page.getStore()).thenReturn(store);
+        when(page.getId()).thenReturn(42L);
+        when(page.getRevision()).thenReturn(revision);
+        when(revision.getId()).thenReturn(7L);
+        when(formValidator.isValid(page)).thenReturn("error");
+    }
+
+    @Test
+    public void testVerdictIsReusedForSameRevision() throws Exception {
+        final ValidationCache validationCache = new ValidationCache();
+
+        assertThat(validationCache.isValid(page, formValidator), is("error"));
+        assertThat(validationCache.isValid(page, formValidator), is("error"));
+
+        verify(formValidator, times(1)).isValid(page);
+    }
+
+    @Test
+    public void testChangedRevisionIsValidatedAgain() throws Exception {
+        final ValidationCache validationCache = new ValidationCache();
+        validationCache.isValid(page, formValidator);
+
+        when(revision.getId()).thenReturn(8L);
+        when(formValidator.isValid(page)).thenReturn(null);
+
+        assertThat(validationCache.isValid(page, formValidator), is(nullValue()));
+        verify(formValidator, times(2)).isValid(page);
+    }
+
+    @Test
+    public void testElementWithoutRevisionIsNotCached() throws Exception {
+        final ValidationCache validationCache = new ValidationCache();
+        when(page.getRevision()).thenReturn(null);
+
+        validationCache.isValid(page, formValidator);
+        validationCache.isValid(page, formValidator);
+
+        verify(formValidator, times(2)).isValid(page);
+    }
+}
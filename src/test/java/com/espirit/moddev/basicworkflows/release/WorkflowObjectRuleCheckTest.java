@@ -0,0 +1,193 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.release;
+
+import com.espirit.moddev.basicworkflows.util.ReferenceResult;
+import com.espirit.moddev.basicworkflows.util.WorkflowConstants;
+
+import de.espirit.firstspirit.access.Language;
+import de.espirit.firstspirit.access.project.Project;
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+import de.espirit.firstspirit.access.store.mediastore.Media;
+import de.espirit.firstspirit.access.store.pagestore.Page;
+import de.espirit.firstspirit.access.store.sitestore.PageRef;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+import de.espirit.firstspirit.agency.UIAgent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WorkflowObjectRuleCheckTest {
+
+    private static final int ELEMENT_COUNT = 24;
+
+    private final List<Object> references = new ArrayList<>();
+    private Language language;
+    private PageRef pageRef;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        language = mock(Language.class);
+        when(language.getLocale()).thenReturn(Locale.GERMANY);
+
+        final Store pageStore = mock(Store.class);
+        when(pageStore.getType()).thenReturn(Store.Type.PAGESTORE);
+        final Store mediaStore = mock(Store.class);
+        when(mediaStore.getType()).thenReturn(Store.Type.MEDIASTORE);
+        final Store siteStore = mock(Store.class);
+        when(siteStore.getType()).thenReturn(Store.Type.SITESTORE);
+
+        final Page currentPage = mock(Page.class);
+        when(currentPage.getStore()).thenReturn(pageStore);
+        when(currentPage.getId()).thenReturn(1000L);
+        pageRef = mock(PageRef.class);
+        when(pageRef.getStore()).thenReturn(siteStore);
+        when(pageRef.getId()).thenReturn(2000L);
+        when(pageRef.getPage()).thenReturn(currentPage);
+
+        final int[] releaseStates = {IDProvider.RELEASED, IDProvider.CHANGED, IDProvider.NEVER_RELEASED};
+        for (int i = 1; i <= ELEMENT_COUNT; i++) {
+            final IDProvider element;
+            if (i % 2 == 0) {
+                element = mock(Page.class);
+                when(element.getStore()).thenReturn(pageStore);
+                when(element.getUidType()).thenReturn(IDProvider.UidType.PAGESTORE);
+            } else {
+                element = mock(Media.class);
+                when(element.getStore()).thenReturn(mediaStore);
+                when(element.getUidType()).thenReturn(IDProvider.UidType.MEDIASTORE_LEAF);
+            }
+            when(element.getId()).thenReturn((long) i);
+            when(element.getUid()).thenReturn("element_" + i);
+            when(element.getDisplayName(language)).thenReturn("Element " + i);
+            when(element.isReleaseSupported()).thenReturn(true);
+            when(element.getReleaseStatus()).thenReturn(releaseStates[i % releaseStates.length]);
+            when(element.hasTask()).thenReturn(i % 5 == 0);
+            references.add(element);
+        }
+        // the same element referenced twice is checked once
+        references.add(references.get(0));
+
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelRuleCheckMatchesSequentialRuleCheck() throws Exception {
+        final Map<Object, Object> sequentialSession = new HashMap<>();
+        final ReferenceResult sequentialResult = createWorkflowObject(sequentialSession, null).checkReferences(references, false);
+
+        final Map<Object, Object> singleThreadSession = new HashMap<>();
+        final ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        final ReferenceResult singleThreadResult;
+        try {
+            singleThreadResult = createWorkflowObject(singleThreadSession, singleThreadExecutor).checkReferences(references, false);
+        } finally {
+            singleThreadExecutor.shutdownNow();
+        }
+
+        final Map<Object, Object> parallelSession = new HashMap<>();
+        final ReferenceResult parallelResult = createWorkflowObject(parallelSession, executor).checkReferences(references, false);
+
+        assertSameResult(singleThreadResult, sequentialResult);
+        assertSameResult(parallelResult, sequentialResult);
+        assertThat(singleThreadSession, is(sequentialSession));
+        assertThat(parallelSession, is(sequentialSession));
+        // make sure the compared results are not trivially equal
+        assertThat(sequentialResult.hasReleaseIssues(true), is(true));
+        assertThat(((Map<?, ?>) sequentialSession.get(WorkflowConstants.WF_NOT_RELEASED_ELEMENTS)).isEmpty(), is(false));
+        assertThat(((Map<?, ?>) sequentialSession.get(WorkflowConstants.WF_OBJECTS_IN_WORKFLOW)).isEmpty(), is(false));
+    }
+
+    @Test
+    public void testParallelRuleCheckMergesWithSessionContents() throws Exception {
+        final Map<Object, Object> sequentialSession = createSessionWithPreviousResults();
+        createWorkflowObject(sequentialSession, null).checkReferences(references, true);
+
+        final Map<Object, Object> parallelSession = createSessionWithPreviousResults();
+        createWorkflowObject(parallelSession, executor).checkReferences(references, true);
+
+        assertThat(parallelSession, is(sequentialSession));
+        assertThat(((Map<?, ?>) parallelSession.get(WorkflowConstants.WF_NOT_RELEASED_ELEMENTS)).containsKey("Previous (previous, 1)"), is(true));
+    }
+
+    @Test
+    public void testEveryElementIsRefreshedOnce() throws Exception {
+        createWorkflowObject(new HashMap<Object, Object>(), null).checkReferences(references, false);
+
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            verify((IDProvider) references.get(i), times(1)).refresh();
+        }
+    }
+
+    private WorkflowObject createWorkflowObject(final Map<Object, Object> session, final ExecutorService ruleCheckExecutor) {
+        final UIAgent uiAgent = mock(UIAgent.class);
+        when(uiAgent.getDisplayLanguage()).thenReturn(language);
+
+        final Project project = mock(Project.class);
+        when(project.getLanguage(Locale.GERMANY.getLanguage().toUpperCase())).thenReturn(language);
+
+        final WorkflowScriptContext workflowScriptContext = mock(WorkflowScriptContext.class);
+        when(workflowScriptContext.getWorkflowable()).thenReturn(pageRef);
+        when(workflowScriptContext.requireSpecialist(UIAgent.TYPE)).thenReturn(uiAgent);
+        when(workflowScriptContext.getProject()).thenReturn(project);
+        when(workflowScriptContext.getSession()).thenReturn(session);
+
+        final WorkflowObject workflowObject = new WorkflowObject(workflowScriptContext);
+        workflowObject.setRuleCheckExecutor(ruleCheckExecutor);
+        return workflowObject;
+    }
+
+    private static Map<Object, Object> createSessionWithPreviousResults() {
+        final Map<String, IDProvider.UidType> notReleasedElements = new HashMap<>();
+        notReleasedElements.put("Previous (previous, 1)", IDProvider.UidType.PAGESTORE);
+        final Map<Object, Object> session = new HashMap<>();
+        session.put(WorkflowConstants.WF_NOT_RELEASED_ELEMENTS, notReleasedElements);
+        return session;
+    }
+
+    private static void assertSameResult(final ReferenceResult actual, final ReferenceResult expected) {
+        assertThat(actual.hasReleaseIssues(true), is(expected.hasReleaseIssues(true)));
+        assertThat(actual.hasReleaseIssues(false), is(expected.hasReleaseIssues(false)));
+        assertThat(actual.isNoBrokenReferences(), is(expected.isNoBrokenReferences()));
+    }
+}
@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AncestorIndexTest {
+
+    private IDProvider root;
+    private IDProvider folder;
+    private IDProvider page1;
+    private IDProvider page2;
+    private IDProvider media;
+
+    @Before
+    public void setUp() throws Exception {
+        root = createElement(Store.Type.PAGESTORE, 1, null);
+        folder = createElement(Store.Type.PAGESTORE, 2, root);
+        page1 = createElement(Store.Type.PAGESTORE, 3, folder);
+        page2 = createElement(Store.Type.PAGESTORE, 4, folder);
+        media = createElement(Store.Type.MEDIASTORE, 2, null);
+    }
+
+    @Test
+    public void testGetAncestors() throws Exception {
+        final AncestorIndex testling = new AncestorIndex();
+
+        assertThat(testling.getAncestors(page1), contains(folder, root));
+        assertThat(testling.getAncestors(page2), contains(folder, root));
+        assertThat(testling.getAncestors(root), empty());
+        assertEquals(2, testling.getDepth(page2));
+
+        // the common parents are resolved once
+        verify(folder, times(1)).getParent();
+    }
+
+    @Test
+    public void testIsDescendantOf() throws Exception {
+        final AncestorIndex testling = new AncestorIndex();
+
+        assertTrue(testling.isDescendantOf(page1, root));
+        assertTrue(testling.isDescendantOf(page1, folder));
+        assertFalse(testling.isDescendantOf(folder, page1));
+        assertFalse(testling.isDescendantOf(page1, page2));
+        assertFalse(testling.isDescendantOf(page1, media));
+    }
+
+    @Test
+    public void testIsDescendantOfKnownDescendant() throws Exception {
+        final IDProvider child = createElement(Store.Type.PAGESTORE, 5, null);
+        final AncestorIndex testling = new AncestorIndex(root, RecursiveChildren.of(Collections.singletonList(child)));
+
+        assertTrue(testling.isDescendantOf(child, root));
+        assertTrue(testling.isDescendantOf(page1, root));
+    }
+
+    @Test
+    public void testSelfReferencingParent() throws Exception {
+        final IDProvider element = createElement(Store.Type.SITESTORE, 6, null);
+        when(element.getParent()).thenReturn(element);
+
+        assertThat(new AncestorIndex().getAncestors(element), contains(element));
+    }
+
+
+    private static IDProvider createElement(final Store.Type storeType, final long id, final IDProvider parent) {
+        final IDProvider element = mock(IDProvider.class);
+        final Store store = mock(Store.class);
+        when(store.getType()).thenReturn(storeType);
+        when(element.getStore()).thenReturn(store);
+        when(element.getId()).thenReturn(id);
+        when(element.getParent()).thenReturn(parent);
+        return element;
+    }
+}
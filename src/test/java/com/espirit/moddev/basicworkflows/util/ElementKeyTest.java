@@ -0,0 +1,71 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ElementKeyTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (final Store.Type storeType : Store.Type.values()) {
+            final long key = ElementKey.of(storeType, 123456789L);
+
+            assertEquals(storeType, ElementKey.getStoreType(key));
+            assertEquals(123456789L, ElementKey.getId(key));
+        }
+    }
+
+    @Test
+    public void testStoresAreDistinguished() throws Exception {
+        assertNotEquals(ElementKey.of(Store.Type.PAGESTORE, 42), ElementKey.of(Store.Type.SITESTORE, 42));
+        assertNotEquals(ElementKey.of(null, 42), ElementKey.of(Store.Type.PAGESTORE, 42));
+    }
+
+    @Test
+    public void testOfElement() throws Exception {
+        final Store store = mock(Store.class);
+        when(store.getType()).thenReturn(Store.Type.MEDIASTORE);
+        final IDProvider element = mock(IDProvider.class);
+        when(element.getStore()).thenReturn(store);
+        when(element.getId()).thenReturn(7L);
+
+        assertEquals(ElementKey.of(Store.Type.MEDIASTORE, 7), ElementKey.of(element));
+        assertEquals("MEDIASTORE#7", ElementKey.toString(ElementKey.of(element)));
+    }
+
+    @Test
+    public void testElementWithoutStore() throws Exception {
+        final IDProvider element = mock(IDProvider.class);
+        when(element.getId()).thenReturn(7L);
+
+        assertNull(ElementKey.getStoreType(ElementKey.of(element)));
+        assertEquals(7L, ElementKey.getId(ElementKey.of(element)));
+    }
+}
@@ -0,0 +1,83 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashSetTest {
+
+    @Test
+    public void testAddAndContains() throws Exception {
+        final LongHashSet testling = new LongHashSet();
+
+        assertTrue(testling.isEmpty());
+        assertTrue(testling.add(5));
+        assertFalse(testling.add(5));
+        assertTrue(testling.add(-5));
+        assertTrue(testling.contains(5));
+        assertTrue(testling.contains(-5));
+        assertFalse(testling.contains(6));
+        assertEquals(2, testling.size());
+    }
+
+    @Test
+    public void testZero() throws Exception {
+        final LongHashSet testling = new LongHashSet();
+
+        assertFalse(testling.contains(0));
+        assertTrue(testling.add(0));
+        assertFalse(testling.add(0));
+        assertTrue(testling.contains(0));
+        assertEquals(1, testling.size());
+    }
+
+    @Test
+    public void testGrow() throws Exception {
+        final LongHashSet testling = new LongHashSet(1);
+        for (long value = 0; value < 10000; value++) {
+            assertTrue(testling.add(ElementKey.of(null, value)));
+        }
+
+        assertEquals(10000, testling.size());
+        for (long value = 0; value < 10000; value++) {
+            assertTrue(testling.contains(ElementKey.of(null, value)));
+        }
+        assertFalse(testling.contains(10000));
+    }
+
+    @Test
+    public void testToArray() throws Exception {
+        final LongHashSet testling = new LongHashSet();
+        testling.add(3);
+        testling.add(0);
+        testling.add(1);
+
+        final long[] values = testling.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(new long[]{0, 1, 3}, values);
+    }
+}
@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.store.IDProvider;
+import de.espirit.firstspirit.access.store.Store;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RecursiveChildrenTest {
+
+    @Test
+    public void testOf() throws Exception {
+        final RecursiveChildren testling = RecursiveChildren.of(Arrays.asList(createElement(Store.Type.PAGESTORE, 7),
+                                                                              createElement(Store.Type.PAGESTORE, 3),
+                                                                              createElement(Store.Type.PAGESTORE, 7),
+                                                                              createElement(Store.Type.MEDIASTORE, 3)));
+
+        assertEquals(3, testling.size());
+        assertTrue(testling.contains(Store.Type.PAGESTORE, 3));
+        assertTrue(testling.contains(Store.Type.PAGESTORE, 7));
+        assertTrue(testling.contains(Store.Type.MEDIASTORE, 3));
+        assertFalse(testling.contains(Store.Type.MEDIASTORE, 7));
+        assertFalse(testling.contains(Store.Type.SITESTORE, 3));
+    }
+
+    @Test
+    public void testFromMap() throws Exception {
+        final Map<Long, Store.Type> childrenIdMap = new HashMap<>();
+        for (long id = 100; id > 0; id--) {
+            childrenIdMap.put(id, id % 2 == 0 ? Store.Type.PAGESTORE : Store.Type.SITESTORE);
+        }
+
+        final RecursiveChildren testling = RecursiveChildren.fromMap(childrenIdMap);
+
+        assertEquals(100, testling.size());
+        assertTrue(testling.contains(Store.Type.PAGESTORE, 42));
+        assertTrue(testling.contains(Store.Type.SITESTORE, 43));
+        assertFalse(testling.contains(Store.Type.SITESTORE, 42));
+        assertFalse(testling.contains(Store.Type.PAGESTORE, 101));
+    }
+
+    @Test
+    public void testToMap() throws Exception {
+        final Map<Long, Store.Type> childrenIdMap = new HashMap<>();
+        childrenIdMap.put(1L, Store.Type.PAGESTORE);
+        childrenIdMap.put(2L, Store.Type.SITESTORE);
+
+        assertEquals(childrenIdMap, RecursiveChildren.fromMap(childrenIdMap).toMap());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final RecursiveChildren recursiveChildren = RecursiveChildren.of(Arrays.asList(createElement(Store.Type.SITESTORE, 5)));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(recursiveChildren);
+        }
+        final RecursiveChildren testling;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            testling = (RecursiveChildren) in.readObject();
+        }
+
+        assertEquals(1, testling.size());
+        assertTrue(testling.contains(Store.Type.SITESTORE, 5));
+    }
+
+
+    private static IDProvider createElement(final Store.Type storeType, final long id) {
+        final Store store = mock(Store.class);
+        when(store.getType()).thenReturn(storeType);
+        final IDProvider element = mock(IDProvider.class);
+        when(element.getStore()).thenReturn(store);
+        when(element.getId()).thenReturn(id);
+        return element;
+    }
+}
@@ -0,0 +1,102 @@
+/*-
+ * ========================LICENSE_START=================================
+ * BasicWorkflows Module
+ * %%
+ * Copyright (C) 2012 - 2018 e-Spirit AG
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package com.espirit.moddev.basicworkflows.util;
+
+import de.espirit.firstspirit.access.Task;
+import de.espirit.firstspirit.access.store.templatestore.WorkflowScriptContext;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WorkflowOptionsTest {
+
+    private WorkflowScriptContext workflowScriptContext;
+    private Map<Object, Object> customAttributes;
+    private Map<Object, Object> session;
+
+    @Before
+    public void setUp() throws Exception {
+        customAttributes = new HashMap<>();
+        session = new HashMap<>();
+        final Task task = mock(Task.class);
+        when(task.getCustomAttributes()).thenReturn(customAttributes);
+        workflowScriptContext = mock(WorkflowScriptContext.class);
+        when(workflowScriptContext.getTask()).thenReturn(task);
+        when(workflowScriptContext.getSession()).thenReturn(session);
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+        final WorkflowOptions testling = WorkflowOptions.read(workflowScriptContext);
+
+        assertFalse(testling.isReleaseWithMedia());
+        assertFalse(testling.isReleaseRecursively());
+        assertFalse(testling.isSuppressDialog());
+        assertTrue(testling.isNotFailed());
+        assertTrue(testling.isNotFailedTest());
+        assertThat(testling.getReleasePageRefUids(), empty());
+        assertThat(testling.getRelatedPageRefUids(), empty());
+        assertEquals(1, testling.getMaxReleasesInFlight());
+        assertEquals(1, testling.getRuleCheckThreads());
+        assertEquals(1, testling.getDiscoveryParallelism());
+    }
+
+    @Test
+    public void testConfiguredValues() throws Exception {
+        customAttributes.put(WorkflowConstants.MEDIA_FORM_REFNAME, WorkflowConstants.TRUE);
+        customAttributes.put(WorkflowConstants.RECURSIVE_FORM_REFNAME, WorkflowConstants.FALSE);
+        customAttributes.put("wfDoFail", WorkflowConstants.TRUE);
+        customAttributes.put("wfDoTestFail", WorkflowConstants.FALSE);
+        customAttributes.put(WorkflowConstants.WF_MAX_RELEASES_IN_FLIGHT, "8");
+        session.put(WorkflowConstants.WF_SUPPRESS_DIALOG, WorkflowConstants.TRUE);
+        session.put(WorkflowConstants.RELEASE_PAGEREF_ELEMENTS, Arrays.asList("variant_a", "variant_b"));
+
+        final WorkflowOptions testling = WorkflowOptions.read(workflowScriptContext);
+
+        assertTrue(testling.isReleaseWithMedia());
+        assertFalse(testling.isReleaseRecursively());
+        assertTrue(testling.isSuppressDialog());
+        assertFalse(testling.isNotFailed());
+        assertTrue(testling.isNotFailedTest());
+        assertThat(testling.getReleasePageRefUids(), contains("variant_a", "variant_b"));
+        assertEquals(8, testling.getMaxReleasesInFlight());
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterChanges() throws Exception {
+        final WorkflowOptions testling = WorkflowOptions.read(workflowScriptContext);
+        session.put(WorkflowConstants.WF_SUPPRESS_DIALOG, WorkflowConstants.TRUE);
+
+        assertFalse(testling.isSuppressDialog());
+    }
+}